@@ -0,0 +1,60 @@
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+public class BenchmarkCase<S> {
+    /**
+     * One parameterized benchmark: an untimed set up that builds the state
+     * for a given key set and a timed run that performs one operation per key.
+     *
+     * The run returns a checksum so that the JIT cannot drop the work it measures.
+     */
+    public interface Run<S> {
+        long run(S state, int[] keys);
+    }
+
+    private final String name;
+    private final BiFunction<Integer, int[], S> setUp;
+    private final Run<S> run;
+    private final BiPredicate<Integer, BenchmarkInput> supports;
+    private final boolean retained;
+
+    public BenchmarkCase(String name, BiFunction<Integer, int[], S> setUp, Run<S> run) {
+        this(name, setUp, run, (size, input) -> true);
+    }
+
+    //supports filters out combinations that are known not to finish, e.g. sorted keys on a list shaped tree
+    public BenchmarkCase(String name, BiFunction<Integer, int[], S> setUp, Run<S> run,
+                         BiPredicate<Integer, BenchmarkInput> supports) {
+        this(name, setUp, run, supports, false);
+    }
+
+    //retained also reports the heap the state holds after the run, per key, measured after a full GC
+    public BenchmarkCase(String name, BiFunction<Integer, int[], S> setUp, Run<S> run,
+                         BiPredicate<Integer, BenchmarkInput> supports, boolean retained) {
+        this.name = name;
+        this.setUp = setUp;
+        this.run = run;
+        this.supports = supports;
+        this.retained = retained;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public boolean measuresRetained() {
+        return retained;
+    }
+
+    public boolean supports(int size, BenchmarkInput input) {
+        return supports.test(size, input);
+    }
+
+    S setUp(int size, int[] keys) {
+        return setUp.apply(size, keys);
+    }
+
+    long run(S state, int[] keys) {
+        return run.run(state, keys);
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class BenchmarkCompare {
+    /**
+     * Compares two result files written by BenchmarkHarness, e.g. from two commits,
+     * and prints the throughput and allocation change of every benchmark they share.
+     *
+     * Usage: BenchmarkCompare base.jsonl candidate.jsonl [regression threshold in %, default 10]
+     * Exits with status 1 when any benchmark lost more throughput than the threshold.
+     */
+    private static final Pattern RESULT = Pattern.compile(
+            "\"benchmark\":\"([^\"]*)\",\"input\":\"([^\"]*)\",\"size\":(\\d+),\"opsPerSecond\":([\\d.]+),"
+                    + "\"opsPerSecondError\":[\\d.]+,\"bytesPerOp\":([\\d.]+)");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkCompare base.jsonl candidate.jsonl [threshold%]");
+            System.exit(2);
+        }
+        Map<String, double[]> base = read(args[0]);
+        Map<String, double[]> candidate = read(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        boolean regressed = false;
+        System.out.println(String.format(Locale.ROOT, "%-60s %14s %14s %9s %12s",
+                "benchmark", "base ops/s", "new ops/s", "change", "bytes/op"));
+        for (Map.Entry<String, double[]> entry : candidate.entrySet()) {
+            double[] before = base.get(entry.getKey());
+            if (before == null) continue;
+            double[] after = entry.getValue();
+            double change = (after[0] - before[0]) * 100 / before[0];
+            if (change < -threshold) regressed = true;
+            System.out.println(String.format(Locale.ROOT, "%-60s %14.0f %14.0f %+8.1f%% %5.1f->%5.1f%s",
+                    entry.getKey(), before[0], after[0], change, before[1], after[1],
+                    change < -threshold ? "  REGRESSION" : ""));
+        }
+        if (regressed) System.exit(1);
+    }
+
+    //benchmark/input/size mapped to throughput and bytes per operation
+    private static Map<String, double[]> read(String file) throws IOException {
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            Matcher m = RESULT.matcher(line);
+            if (m.find())
+                results.put(m.group(1) + "/" + m.group(2) + "/" + m.group(3),
+                        new double[]{Double.parseDouble(m.group(4)), Double.parseDouble(m.group(5))});
+        }
+        return results;
+    }
+}
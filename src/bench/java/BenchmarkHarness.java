@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class BenchmarkHarness {
+    /**
+     * Runs every benchmark suite over each key order and size, and writes the results
+     * as JSON Lines, one JSON object per line, so that two result files can be diffed
+     * with BenchmarkCompare.
+     *
+     * Each measured iteration builds a fresh state, then times one run over all keys.
+     * Throughput is reported in operations per second and allocation in bytes per
+     * operation, read from the thread allocation counter of HotSpot. Cases that ask
+     * for it also report retainedBytesPerOp: the growth of the used heap over the run,
+     * each side measured after a full GC, which is the footprint of what the run built.
+     *
+     * Settings are system properties:
+     *   bench.sizes       comma separated sizes, default 1000,10000,100000,1000000
+     *   bench.inputs      comma separated BenchmarkInput names, default all
+     *   bench.filter      regular expression on benchmark names, default all
+     *   bench.warmup      warm up iterations, default 3
+     *   bench.iterations  measured iterations, default 5
+     *   bench.out         result file, default target/benchmarks/results.jsonl
+     *
+     * Run with: mvn -Pbench compile exec:java -Dbench.filter=HashTable
+     */
+    private static final long SEED = 42;
+
+    //written by measure so that the JIT cannot free a state before its retained size is read
+    static volatile Object retainedState;
+
+    //every suite lists its cases here
+    static List<BenchmarkCase<?>> allCases() {
+        List<BenchmarkCase<?>> cases = new ArrayList<>();
+        cases.addAll(DataStructureBenchmarks.cases());
+        cases.addAll(ConcurrentBenchmarks.cases());
+        cases.addAll(DijkstraBenchmarks.cases());
+        return cases;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = Arrays.stream(System.getProperty("bench.sizes", "1000,10000,100000,1000000").split(","))
+                .mapToInt(s -> (int) Double.parseDouble(s.trim())).toArray();
+        String inputNames = System.getProperty("bench.inputs", "");
+        List<BenchmarkInput> inputs = new ArrayList<>();
+        if (inputNames.isEmpty()) inputs.addAll(Arrays.asList(BenchmarkInput.values()));
+        else for (String name : inputNames.split(","))
+            inputs.add(BenchmarkInput.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        Pattern filter = Pattern.compile(System.getProperty("bench.filter", ".*"));
+        int warmup = Integer.getInteger("bench.warmup", 3);
+        int iterations = Integer.getInteger("bench.iterations", 5);
+        Path out = Paths.get(System.getProperty("bench.out", "target/benchmarks/results.jsonl"));
+
+        List<String> results = new ArrayList<>();
+        for (BenchmarkCase<?> benchmark : allCases()) {
+            if (!filter.matcher(benchmark.name()).find()) continue;
+            for (BenchmarkInput input : inputs)
+                for (int size : sizes) {
+                    if (!benchmark.supports(size, input)) continue;
+                    String result = measure(benchmark, input, size, warmup, iterations);
+                    System.out.println(result);
+                    results.add(result);
+                }
+        }
+
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        try (PrintStream ps = new PrintStream(Files.newOutputStream(out), false, "UTF-8")) {
+            for (String result : results) ps.println(result);
+        }
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+
+    private static <S> String measure(BenchmarkCase<S> benchmark, BenchmarkInput input, int size,
+                                      int warmup, int iterations) {
+        int[] keys = input.keys(size, SEED);
+        double[] opsPerSecond = new double[iterations];
+        double bytesPerOp = 0, retainedBytesPerOp = 0;
+        long checksum = 0;
+        try {
+            for (int i = 0; i < warmup + iterations; i++) {
+                S state = benchmark.setUp(size, keys);
+                long used = benchmark.measuresRetained() ? usedHeapAfterGc() : 0;
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                checksum += benchmark.run(state, keys);
+                long elapsed = Math.max(1, System.nanoTime() - start);
+                allocated = allocatedBytes() - allocated;
+                if (benchmark.measuresRetained()) {
+                    used = usedHeapAfterGc() - used;
+                    //keeps the state reachable until the second measurement is done
+                    retainedState = state;
+                    retainedState = null;
+                }
+                if (i < warmup) continue;
+                opsPerSecond[i - warmup] = keys.length * 1e9 / elapsed;
+                bytesPerOp += (double) allocated / keys.length / iterations;
+                retainedBytesPerOp += (double) used / keys.length / iterations;
+            }
+        } catch (Throwable e) {
+            //a structure that overflows the stack or the heap at this size is reported, not fatal
+            return String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"input\":\"%s\",\"size\":%d,\"error\":\"%s\"}",
+                    benchmark.name(), input, size, e.getClass().getSimpleName());
+        }
+        double mean = Arrays.stream(opsPerSecond).average().orElse(0);
+        double variance = Arrays.stream(opsPerSecond).map(x -> (x - mean) * (x - mean)).sum() / Math.max(1, iterations - 1);
+        String retained = benchmark.measuresRetained()
+                ? String.format(Locale.ROOT, ",\"retainedBytesPerOp\":%.2f", retainedBytesPerOp) : "";
+        return String.format(Locale.ROOT,
+                "{\"benchmark\":\"%s\",\"input\":\"%s\",\"size\":%d,\"opsPerSecond\":%.1f,\"opsPerSecondError\":%.1f,"
+                        + "\"bytesPerOp\":%.2f%s,\"checksum\":%d}",
+                benchmark.name(), input, size, mean, Math.sqrt(variance), bytesPerOp, retained, checksum);
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean bean = ManagementFactory.getMemoryMXBean();
+        //a second collection picks up what finalization or reference processing released in the first
+        bean.gc();
+        bean.gc();
+        return bean.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
@@ -0,0 +1,30 @@
+import java.util.Random;
+
+public enum BenchmarkInput {
+    /**
+     * Key orders every benchmark is run against.
+     * All of them are permutations of 0..size-1, so only the order changes.
+     */
+    //a random permutation
+    RANDOM,
+    //ascending keys, the common case for timestamps and sequence ids
+    SORTED,
+    //descending keys, every insert is a new minimum: worst case for min-heaps and plain search trees
+    ADVERSARIAL;
+
+    public int[] keys(int size, long seed) {
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++)
+            keys[i] = this == ADVERSARIAL ? size - 1 - i : i;
+        if (this == RANDOM) {
+            Random random = new Random(seed);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.IntFunction;
+
+public class ConcurrentBenchmarks {
+    /**
+     * Multi-threaded benchmarks. Every run splits the keys between worker threads,
+     * so the reported throughput is the total over all threads.
+     * The thread counts are 1 and bench.threads, which defaults to the number of cores.
+     */
+    interface Worker {
+        long work(int[] keys, int from, int to);
+    }
+
+    //run worker over equal slices of the keys on the given number of threads, and sum their checksums
+    static long runThreads(int threads, int[] keys, Worker worker) {
+        AtomicLong checksum = new AtomicLong();
+        List<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) keys.length * t / threads);
+            int to = (int) ((long) keys.length * (t + 1) / threads);
+            Thread thread = new Thread(() -> checksum.addAndGet(worker.work(keys, from, to)));
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        return checksum.get();
+    }
+
+    static int[] threadCounts() {
+        int threads = Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors());
+        return threads > 1 ? new int[]{1, threads} : new int[]{1};
+    }
+
+    //one operation is an add followed by a poll, on a queue that starts with the keys in it
+    static <Q> BenchmarkCase<Q> queueCase(String name, int threads, IntFunction<Q> create,
+                                          Adder<Q> adder, Poller<Q> poller) {
+        return new BenchmarkCase<>(name + "(threads=" + threads + ")",
+                (size, keys) -> {
+                    Q queue = create.apply(size);
+                    for (int k : keys) adder.add(queue, k);
+                    return queue;
+                },
+                (queue, keys) -> runThreads(threads, keys, (ks, from, to) -> {
+                    long sum = 0;
+                    for (int i = from; i < to; i++) {
+                        adder.add(queue, ks[i] + ks.length);
+                        Integer polled = poller.poll(queue);
+                        if (polled != null) sum += polled;
+                    }
+                    return sum;
+                }));
+    }
+
+    //one operation is a contains, except for every 20th one, which removes the key
+    //or adds it back; the set starts with all the keys in it
+    static <S> BenchmarkCase<S> readMostlyCase(String name, int threads, IntFunction<S> create, Adder<S> adder,
+                                               BiPredicate<S, Integer> contains, BiPredicate<S, Integer> remover) {
+        return new BenchmarkCase<>(name + "(threads=" + threads + ")",
+                (size, keys) -> {
+                    S set = create.apply(size);
+                    for (int k : keys) adder.add(set, k);
+                    return set;
+                },
+                (set, keys) -> runThreads(threads, keys, (ks, from, to) -> {
+                    long found = 0;
+                    for (int i = from; i < to; i++) {
+                        Integer key = ks[i];
+                        if (i % 20 == 0) {
+                            if (!remover.test(set, key)) adder.add(set, key);
+                        }
+                        else if (contains.test(set, key)) found++;
+                    }
+                    return found;
+                }));
+    }
+
+    interface Adder<Q> {
+        void add(Q queue, Integer element);
+    }
+
+    interface Poller<Q> {
+        Integer poll(Q queue);
+    }
+
+    static List<BenchmarkCase<?>> cases() {
+        List<BenchmarkCase<?>> cases = new ArrayList<>();
+
+        //ConcurrentPriorityQueue against a java.util.PriorityQueue behind one lock
+        for (int threads : threadCounts()) {
+            cases.add(queueCase("ConcurrentPriorityQueue.add+poll", threads,
+                    size -> new ConcurrentPriorityQueue<Integer>(),
+                    ConcurrentPriorityQueue::add, ConcurrentPriorityQueue::poll));
+            cases.add(queueCase("synchronized java.util.PriorityQueue.add+poll", threads,
+                    size -> new java.util.PriorityQueue<Integer>(),
+                    (queue, element) -> {
+                        synchronized (queue) {
+                            queue.add(element);
+                        }
+                    },
+                    queue -> {
+                        synchronized (queue) {
+                            return queue.poll();
+                        }
+                    }));
+        }
+
+        //95% contains and 5% writes: the persistent tree against a balanced tree behind one lock
+        for (int threads : threadCounts()) {
+            cases.add(readMostlyCase("ConcurrentBinarySearchTree.95%contains", threads,
+                    size -> new ConcurrentBinarySearchTree<Integer>(),
+                    ConcurrentBinarySearchTree::add, ConcurrentBinarySearchTree::contains,
+                    ConcurrentBinarySearchTree::remove));
+            cases.add(readMostlyCase("synchronized BinarySearchTree(balanced).95%contains", threads,
+                    size -> new BinarySearchTree<Integer>(true),
+                    (tree, key) -> {
+                        synchronized (tree) {
+                            tree.add(key);
+                        }
+                    },
+                    (tree, key) -> {
+                        synchronized (tree) {
+                            return tree.contains(key);
+                        }
+                    },
+                    (tree, key) -> {
+                        synchronized (tree) {
+                            return tree.remove(key);
+                        }
+                    }));
+            cases.add(readMostlyCase("java.util.concurrent.ConcurrentSkipListSet.95%contains", threads,
+                    size -> new ConcurrentSkipListSet<Integer>(),
+                    ConcurrentSkipListSet::add, ConcurrentSkipListSet::contains, ConcurrentSkipListSet::remove));
+        }
+        return cases;
+    }
+}
@@ -0,0 +1,902 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+public class DataStructureBenchmarks {
+    /**
+     * Benchmarks of every structure of the project next to its java.util counterpart.
+     * Keys are boxed during set up so that the timed runs do not measure boxing.
+     */
+    static class State<T> {
+        final T structure;
+        final Integer[] boxed;
+
+        State(T structure, int[] keys) {
+            this.structure = structure;
+            this.boxed = box(keys);
+        }
+    }
+
+    static Integer[] box(int[] keys) {
+        Integer[] boxed = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            boxed[i] = keys[i];
+        return boxed;
+    }
+
+    //a key whose hash code is shared by 1024 consecutive values
+    static final class CollidingKey implements Comparable<CollidingKey> {
+        final int value;
+
+        CollidingKey(int value) {
+            this.value = value;
+        }
+
+        @Override public int hashCode() {
+            return value >>> 10;
+        }
+
+        @Override public boolean equals(Object other) {
+            return other instanceof CollidingKey && ((CollidingKey) other).value == value;
+        }
+
+        @Override public int compareTo(CollidingKey other) {
+            return Integer.compare(value, other.value);
+        }
+    }
+
+    //a plain tree turns into a list on ordered keys, every operation then walks all of it
+    private static boolean shallow(int size, BenchmarkInput input) {
+        return input == BenchmarkInput.RANDOM || size <= 10_000;
+    }
+
+    static final ExternalPriorityQueue.Serializer<Integer> INTEGER_SERIALIZER = new ExternalPriorityQueue.Serializer<Integer>() {
+        @Override public byte[] serialize(Integer element) {
+            return ByteBuffer.allocate(4).putInt(element).array();
+        }
+
+        @Override public Integer deserialize(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    static HashTableSeparateChaining<Integer, Integer> filledChainingTable(int size, int[] keys) {
+        HashTableSeparateChaining<Integer, Integer> table = new HashTableSeparateChaining<>();
+        for (int k : keys) table.put(k, k);
+        return table;
+    }
+
+    static State<BinarySearchTree<Integer>> filledBalancedTree(int size, int[] keys) {
+        State<BinarySearchTree<Integer>> s = new State<>(new BinarySearchTree<Integer>(true), keys);
+        for (Integer k : s.boxed) s.structure.add(k);
+        return s;
+    }
+
+    static State<TreeSet<Integer>> filledTreeSet(int size, int[] keys) {
+        State<TreeSet<Integer>> s = new State<>(new TreeSet<Integer>(), keys);
+        for (Integer k : s.boxed) s.structure.add(k);
+        return s;
+    }
+
+    static MappedBPlusTree newMappedTree() {
+        try {
+            Path file = Files.createTempFile("bplustree", ".db");
+            Files.delete(file);
+            file.toFile().deleteOnExit();
+            return new MappedBPlusTree(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //unmaps the tree and deletes its file, so the iterations do not pile files up until exit
+    static void discard(MappedBPlusTree tree) {
+        tree.close();
+        try {
+            Files.deleteIfExists(tree.path());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<BenchmarkCase<?>> cases() {
+        List<BenchmarkCase<?>> cases = new ArrayList<>();
+
+        //DynamicArray
+        cases.add(new BenchmarkCase<>("DynamicArray.add",
+                (size, keys) -> new State<>(new DynamicArray<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("java.util.ArrayList.add",
+                (size, keys) -> new State<>(new ArrayList<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("DynamicArray.get",
+                (size, keys) -> {
+                    DynamicArray<Integer> array = new DynamicArray<>();
+                    for (int k : keys) array.add(k);
+                    return array;
+                },
+                (array, keys) -> {
+                    long sum = 0;
+                    for (int k : keys) sum += array.get(k);
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.ArrayList.get",
+                (size, keys) -> {
+                    ArrayList<Integer> array = new ArrayList<>();
+                    for (int k : keys) array.add(k);
+                    return array;
+                },
+                (array, keys) -> {
+                    long sum = 0;
+                    for (int k : keys) sum += array.get(k);
+                    return sum;
+                }));
+
+        //DoublyLinkedList, one operation is an addLast followed later by a removeFirst
+        cases.add(new BenchmarkCase<>("DoublyLinkedList.addLast+removeFirst",
+                (size, keys) -> new State<>(new DoublyLinkedList<Integer>(), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.addLast(k);
+                    while (!s.structure.isEmpty()) sum += s.structure.removeFirst();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.LinkedList.addLast+removeFirst",
+                (size, keys) -> new State<>(new LinkedList<Integer>(), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.addLast(k);
+                    while (!s.structure.isEmpty()) sum += s.structure.removeFirst();
+                    return sum;
+                }));
+
+        //Stack and Queue
+        cases.add(new BenchmarkCase<>("Stack.push+pop",
+                (size, keys) -> new State<>(new Stack<Integer>(), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.push(k);
+                    while (!s.structure.isEmpty()) sum += s.structure.pop();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.ArrayDeque.push+pop",
+                (size, keys) -> new State<>(new ArrayDeque<Integer>(), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.push(k);
+                    while (!s.structure.isEmpty()) sum += s.structure.pop();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("Queue.offer+poll",
+                (size, keys) -> new State<>(new Queue<Integer>(), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.offer(k);
+                    while (!s.structure.isEmpty()) sum += s.structure.poll();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.ArrayDeque.offer+poll",
+                (size, keys) -> new State<>(new ArrayDeque<Integer>(), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.offer(k);
+                    while (!s.structure.isEmpty()) sum += s.structure.poll();
+                    return sum;
+                }));
+
+        //PriorityQueue
+        cases.add(new BenchmarkCase<>("PriorityQueue.add",
+                (size, keys) -> new State<>(new PriorityQueue<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("java.util.PriorityQueue.add",
+                (size, keys) -> new State<>(new java.util.PriorityQueue<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("PriorityQueue.poll",
+                (size, keys) -> {
+                    PriorityQueue<Integer> queue = new PriorityQueue<>();
+                    for (int k : keys) queue.add(k);
+                    return queue;
+                },
+                (queue, keys) -> {
+                    long sum = 0;
+                    while (!queue.isEmpty()) sum += queue.poll();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.PriorityQueue.poll",
+                (size, keys) -> {
+                    java.util.PriorityQueue<Integer> queue = new java.util.PriorityQueue<>();
+                    for (int k : keys) queue.add(k);
+                    return queue;
+                },
+                (queue, keys) -> {
+                    long sum = 0;
+                    while (!queue.isEmpty()) sum += queue.poll();
+                    return sum;
+                }));
+
+        //DaryPriorityQueue by arity: add heavy, poll heavy and a steady poll+add mix on a full heap
+        for (int arity : new int[]{2, 4, 8}) {
+            cases.add(new BenchmarkCase<>("DaryPriorityQueue(d=" + arity + ").add",
+                    (size, keys) -> new State<>(new DaryPriorityQueue<Integer>(arity), keys),
+                    (s, keys) -> {
+                        for (Integer k : s.boxed) s.structure.add(k);
+                        return s.structure.size();
+                    }));
+            cases.add(new BenchmarkCase<>("DaryPriorityQueue(d=" + arity + ").poll",
+                    (size, keys) -> {
+                        DaryPriorityQueue<Integer> queue = new DaryPriorityQueue<>(arity, size, null);
+                        for (int k : keys) queue.add(k);
+                        return queue;
+                    },
+                    (queue, keys) -> {
+                        long sum = 0;
+                        while (!queue.isEmpty()) sum += queue.poll();
+                        return sum;
+                    }));
+            cases.add(new BenchmarkCase<>("DaryPriorityQueue(d=" + arity + ").pollAndAdd",
+                    (size, keys) -> {
+                        State<DaryPriorityQueue<Integer>> s =
+                                new State<>(new DaryPriorityQueue<Integer>(arity, size, null), keys);
+                        for (Integer k : s.boxed) s.structure.add(k);
+                        return s;
+                    },
+                    (s, keys) -> {
+                        //every polled element comes back later than the rest, as in an event loop
+                        long sum = 0;
+                        for (Integer k : s.boxed) sum += s.structure.pollAndAdd(k + keys.length);
+                        return sum;
+                    }));
+        }
+
+        //timeouts of up to 10s that are all cancelled before they fire, one operation is a schedule and a cancel
+        cases.add(new BenchmarkCase<>("TimingWheel.schedule+cancel",
+                (size, keys) -> new TimingWheel<Integer>(1, TimeUnit.MILLISECONDS, new int[]{256, 64, 64, 64},
+                        task -> { }, () -> 0L),
+                (wheel, keys) -> {
+                    List<TimingWheel<Integer>.Timeout> timeouts = new ArrayList<>(keys.length);
+                    for (int k : keys) timeouts.add(wheel.schedule(k, k % 10_000, TimeUnit.MILLISECONDS));
+                    long cancelled = 0;
+                    for (TimingWheel<Integer>.Timeout timeout : timeouts) if (timeout.cancel()) cancelled++;
+                    return cancelled;
+                }));
+        cases.add(new BenchmarkCase<>("PriorityQueue.add+remove(timeouts)",
+                (size, keys) -> new PriorityQueue<Long>(),
+                (queue, keys) -> {
+                    Long[] deadlines = new Long[keys.length];
+                    for (int i = 0; i < keys.length; i++) queue.add(deadlines[i] = (long) (keys[i] % 10_000) << 32 | i);
+                    long cancelled = 0;
+                    for (Long deadline : deadlines) if (queue.remove(deadline)) cancelled++;
+                    return cancelled;
+                }));
+
+        //bulk construction, compare with PriorityQueue.add
+        cases.add(new BenchmarkCase<>("PriorityQueue.new(Collection)",
+                (size, keys) -> java.util.Arrays.asList(box(keys)),
+                (list, keys) -> new PriorityQueue<>(list).size()));
+
+        //PairingHeap, and merging 100 shards of the keys into one queue
+        cases.add(new BenchmarkCase<>("PairingHeap.add",
+                (size, keys) -> new State<>(new PairingHeap<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("PairingHeap.poll",
+                (size, keys) -> {
+                    PairingHeap<Integer> heap = new PairingHeap<>();
+                    for (int k : keys) heap.add(k);
+                    return heap;
+                },
+                (heap, keys) -> {
+                    long sum = 0;
+                    while (!heap.isEmpty()) sum += heap.poll();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("PairingHeap.merge(100 shards)",
+                (size, keys) -> {
+                    List<PairingHeap<Integer>> shards = new ArrayList<>();
+                    for (int i = 0; i < 100; i++) shards.add(new PairingHeap<>());
+                    for (int i = 0; i < keys.length; i++) shards.get(i % 100).add(keys[i]);
+                    return shards;
+                },
+                (shards, keys) -> {
+                    PairingHeap<Integer> merged = new PairingHeap<>();
+                    for (PairingHeap<Integer> shard : shards) merged.merge(shard);
+                    return merged.peek();
+                }));
+        cases.add(new BenchmarkCase<>("PriorityQueue.merge(100 shards)",
+                (size, keys) -> {
+                    List<PriorityQueue<Integer>> shards = new ArrayList<>();
+                    for (int i = 0; i < 100; i++) shards.add(new PriorityQueue<>());
+                    for (int i = 0; i < keys.length; i++) shards.get(i % 100).add(keys[i]);
+                    return shards;
+                },
+                (shards, keys) -> {
+                    PriorityQueue<Integer> merged = new PriorityQueue<>();
+                    for (PriorityQueue<Integer> shard : shards) merged.merge(shard);
+                    return merged.peek();
+                }));
+
+        //ExternalPriorityQueue holding a tenth of the keys in memory, the rest spills to run files
+        cases.add(new BenchmarkCase<>("ExternalPriorityQueue(memory=size/10).add+poll",
+                (size, keys) -> new State<>(new ExternalPriorityQueue<Integer>(
+                        Paths.get(System.getProperty("java.io.tmpdir")), Math.max(1, size / 10), INTEGER_SERIALIZER), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    while (!s.structure.isEmpty()) sum += s.structure.poll();
+                    s.structure.close();
+                    return sum;
+                }));
+
+        //keep the 100 largest keys of the stream
+        cases.add(new BenchmarkCase<>("TopK(k=100).offer",
+                (size, keys) -> new State<>(new TopK<Integer>(100), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.offer(k);
+                    return s.structure.peekThreshold();
+                }));
+        cases.add(new BenchmarkCase<>("PriorityQueue(k=100).add+poll",
+                (size, keys) -> new State<>(new PriorityQueue<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) {
+                        s.structure.add(k);
+                        if (s.structure.size() > 100) s.structure.poll();
+                    }
+                    return s.structure.peek();
+                }));
+        cases.add(new BenchmarkCase<>("java.util.PriorityQueue(k=100).add+poll",
+                (size, keys) -> new State<>(new java.util.PriorityQueue<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) {
+                        s.structure.add(k);
+                        if (s.structure.size() > 100) s.structure.poll();
+                    }
+                    return s.structure.peek();
+                }));
+
+        //IndexedPriorityQueue, one operation is an insert, a decrease to half and a later poll
+        cases.add(new BenchmarkCase<>("IndexedPriorityQueue.insert+decrease+poll",
+                (size, keys) -> new State<>(new IndexedPriorityQueue<Integer>(size), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (int i = 0; i < keys.length; i++) s.structure.insert(i, s.boxed[i]);
+                    for (int i = 0; i < keys.length; i++) s.structure.decrease(i, s.boxed[i] / 2);
+                    while (!s.structure.isEmpty()) sum += s.structure.pollMinId();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("PriorityQueue.add+remove+add+poll",
+                (size, keys) -> new State<>(new PriorityQueue<Integer>(), keys),
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    //without decreaseKey a lower priority is a remove followed by an add
+                    for (Integer k : s.boxed) {
+                        s.structure.remove(k);
+                        s.structure.add(k / 2);
+                    }
+                    while (!s.structure.isEmpty()) sum += s.structure.poll();
+                    return sum;
+                }));
+
+        //BinarySearchTree
+        cases.add(new BenchmarkCase<>("BinarySearchTree.add",
+                (size, keys) -> new State<>(new BinarySearchTree<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                },
+                DataStructureBenchmarks::shallow));
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).add",
+                (size, keys) -> new State<>(new BinarySearchTree<Integer>(true), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("BinarySearchTree.addAll",
+                (size, keys) -> new State<>(new BinarySearchTree<Integer>(), keys),
+                (s, keys) -> s.structure.addAll(s.boxed),
+                DataStructureBenchmarks::shallow));
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).addAll",
+                (size, keys) -> new State<>(new BinarySearchTree<Integer>(true), keys),
+                (s, keys) -> s.structure.addAll(s.boxed)));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.add",
+                (size, keys) -> new State<>(new TreeSet<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.addAll",
+                (size, keys) -> new State<>(new TreeSet<Integer>(), keys),
+                (s, keys) -> {
+                    s.structure.addAll(Arrays.asList(s.boxed));
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("BinarySearchTree.contains",
+                (size, keys) -> {
+                    State<BinarySearchTree<Integer>> s = new State<>(new BinarySearchTree<Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long found = 0;
+                    for (Integer k : s.boxed) if (s.structure.contains(k)) found++;
+                    return found;
+                },
+                DataStructureBenchmarks::shallow));
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).contains",
+                (size, keys) -> {
+                    State<BinarySearchTree<Integer>> s = new State<>(new BinarySearchTree<Integer>(true), keys);
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long found = 0;
+                    for (Integer k : s.boxed) if (s.structure.contains(k)) found++;
+                    return found;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.contains",
+                (size, keys) -> {
+                    State<TreeSet<Integer>> s = new State<>(new TreeSet<Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long found = 0;
+                    for (Integer k : s.boxed) if (s.structure.contains(k)) found++;
+                    return found;
+                }));
+
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).remove",
+                (size, keys) -> {
+                    State<BinarySearchTree<Integer>> s = new State<>(new BinarySearchTree<Integer>(true), keys);
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long removed = 0;
+                    for (Integer k : s.boxed) if (s.structure.remove(k)) removed++;
+                    return removed;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.remove",
+                (size, keys) -> {
+                    State<TreeSet<Integer>> s = new State<>(new TreeSet<Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.add(k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long removed = 0;
+                    for (Integer k : s.boxed) if (s.structure.remove(k)) removed++;
+                    return removed;
+                }));
+
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).rank",
+                DataStructureBenchmarks::filledBalancedTree,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.rank(k);
+                    return sum;
+                }));
+        //no order statistics in TreeSet, a head set counts its elements one by one
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.headSet.size",
+                DataStructureBenchmarks::filledTreeSet,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.headSet(k).size();
+                    return sum;
+                },
+                (size, input) -> size <= 10_000));
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).select",
+                DataStructureBenchmarks::filledBalancedTree,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (int k : keys) sum += s.structure.select(k);
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).floor",
+                DataStructureBenchmarks::filledBalancedTree,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.floor(k);
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.floor",
+                DataStructureBenchmarks::filledTreeSet,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.floor(k);
+                    return sum;
+                }));
+        //one operation is a scan of the 100 keys starting at a key
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).rangeIterator",
+                DataStructureBenchmarks::filledBalancedTree,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (int k : keys) {
+                        Iterator<Integer> it = s.structure.rangeIterator(k, k + 99);
+                        while (it.hasNext()) sum += it.next();
+                    }
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.subSet",
+                DataStructureBenchmarks::filledTreeSet,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (int k : keys)
+                        for (Integer e : s.structure.subSet(k, true, k + 99, true)) sum += e;
+                    return sum;
+                }));
+
+        for (BinarySearchTree.TreeTraversalEnum order : BinarySearchTree.TreeTraversalEnum.values())
+            cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).iterator(" + order + ")",
+                    DataStructureBenchmarks::filledBalancedTree,
+                    (s, keys) -> {
+                        long sum = 0;
+                        Iterator<Integer> it = s.structure.iterator(order);
+                        while (it.hasNext()) sum += it.next();
+                        return sum;
+                    }));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.iterator",
+                DataStructureBenchmarks::filledTreeSet,
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.structure) sum += k;
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).stream.parallel",
+                DataStructureBenchmarks::filledBalancedTree,
+                (s, keys) -> s.structure.stream().parallel().mapToLong(Integer::longValue).sum()));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.stream.parallel",
+                DataStructureBenchmarks::filledTreeSet,
+                (s, keys) -> s.structure.stream().parallel().mapToLong(Integer::longValue).sum()));
+
+        //BPlusTree, at a few orders
+        for (int order : new int[]{16, 64, 256}) {
+            cases.add(new BenchmarkCase<>("BPlusTree(order=" + order + ").add",
+                    (size, keys) -> new State<>(new BPlusTree<Integer>(order), keys),
+                    (s, keys) -> {
+                        for (Integer k : s.boxed) s.structure.add(k);
+                        return s.structure.size();
+                    }));
+            cases.add(new BenchmarkCase<>("BPlusTree(order=" + order + ").contains",
+                    (size, keys) -> {
+                        State<BPlusTree<Integer>> s = new State<>(new BPlusTree<Integer>(order), keys);
+                        for (Integer k : s.boxed) s.structure.add(k);
+                        return s;
+                    },
+                    (s, keys) -> {
+                        long found = 0;
+                        for (Integer k : s.boxed) if (s.structure.contains(k)) found++;
+                        return found;
+                    }));
+        }
+        cases.add(new BenchmarkCase<>("BPlusTree.iterator",
+                (size, keys) -> {
+                    BPlusTree<Integer> tree = new BPlusTree<>();
+                    for (int k : keys) tree.add(k);
+                    return tree;
+                },
+                (tree, keys) -> {
+                    long sum = 0;
+                    for (Integer k : tree) sum += k;
+                    return sum;
+                }));
+        //MappedBPlusTree in a temporary file, with the default 1024 cached 4KB pages
+        cases.add(new BenchmarkCase<>("MappedBPlusTree.add",
+                (size, keys) -> newMappedTree(),
+                (tree, keys) -> {
+                    for (int k : keys) tree.add(k);
+                    long size = tree.size();
+                    discard(tree);
+                    return size;
+                }));
+        cases.add(new BenchmarkCase<>("MappedBPlusTree.contains",
+                (size, keys) -> {
+                    MappedBPlusTree tree = newMappedTree();
+                    for (int k : keys) tree.add(k);
+                    return tree;
+                },
+                (tree, keys) -> {
+                    long found = 0;
+                    for (int k : keys) if (tree.contains(k)) found++;
+                    discard(tree);
+                    return found;
+                }));
+
+        //rebuilding from a sorted snapshot of the keys
+        cases.add(new BenchmarkCase<>("BinarySearchTree.fromSorted",
+                (size, keys) -> {
+                    int[] sorted = keys.clone();
+                    Arrays.sort(sorted);
+                    return box(sorted);
+                },
+                (sorted, keys) -> BinarySearchTree.fromSorted(sorted, true).size()));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet(SortedSet)",
+                (size, keys) -> filledTreeSet(size, keys).structure,
+                (sorted, keys) -> new TreeSet<>(sorted).size()));
+        //union of two trees holding every other key each
+        cases.add(new BenchmarkCase<>("BinarySearchTree(balanced).union",
+                (size, keys) -> {
+                    List<BinarySearchTree<Integer>> halves = new ArrayList<>();
+                    halves.add(new BinarySearchTree<Integer>(true));
+                    halves.add(new BinarySearchTree<Integer>(true));
+                    for (int i = 0; i < keys.length; i++) halves.get(i % 2).add(keys[i]);
+                    return halves;
+                },
+                (halves, keys) -> halves.get(0).union(halves.get(1)).size()));
+        cases.add(new BenchmarkCase<>("java.util.TreeSet.addAll(TreeSet)",
+                (size, keys) -> {
+                    List<TreeSet<Integer>> halves = new ArrayList<>();
+                    halves.add(new TreeSet<Integer>());
+                    halves.add(new TreeSet<Integer>());
+                    for (int i = 0; i < keys.length; i++) halves.get(i % 2).add(keys[i]);
+                    return halves;
+                },
+                (halves, keys) -> {
+                    TreeSet<Integer> union = new TreeSet<>(halves.get(0));
+                    union.addAll(halves.get(1));
+                    return union.size();
+                }));
+
+        //HashTableSeparateChaining
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.put",
+                (size, keys) -> new State<>(new HashTableSeparateChaining<Integer, Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("HashTableOpenAddressing.put",
+                (size, keys) -> new State<>(new HashTableOpenAddressing<Integer, Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("java.util.HashMap.put",
+                (size, keys) -> new State<>(new HashMap<Integer, Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.get",
+                (size, keys) -> {
+                    State<HashTableSeparateChaining<Integer, Integer>> s =
+                            new State<>(new HashTableSeparateChaining<Integer, Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.get(k);
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("HashTableOpenAddressing.get",
+                (size, keys) -> {
+                    State<HashTableOpenAddressing<Integer, Integer>> s =
+                            new State<>(new HashTableOpenAddressing<Integer, Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.get(k);
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("IntIntTable.get",
+                (size, keys) -> {
+                    IntIntTable table = new IntIntTable();
+                    for (int k : keys) table.put(k, k);
+                    return table;
+                },
+                (table, keys) -> {
+                    long sum = 0;
+                    for (int k : keys) sum += table.get(k);
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("IntIntTable.put",
+                (size, keys) -> new IntIntTable(),
+                (table, keys) -> {
+                    for (int k : keys) table.put(k, k);
+                    return table.size();
+                }));
+        cases.add(new BenchmarkCase<>("LongObjectTable.put",
+                (size, keys) -> new State<>(new LongObjectTable<Integer>(), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("LongObjectTable.get",
+                (size, keys) -> {
+                    State<LongObjectTable<Integer>> s = new State<>(new LongObjectTable<Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long sum = 0;
+                    for (int k : keys) sum += s.structure.get(k);
+                    return sum;
+                }));
+
+        //retained heap per entry after a full GC; the runs box every key, as a caller holding ints would
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.footprint",
+                (size, keys) -> new HashTableSeparateChaining<Integer, Integer>(),
+                (table, keys) -> {
+                    for (int k : keys) {
+                        Integer boxed = k;
+                        table.put(boxed, boxed);
+                    }
+                    return table.size();
+                }, (size, input) -> true, true));
+        cases.add(new BenchmarkCase<>("HashTableOpenAddressing.footprint",
+                (size, keys) -> new HashTableOpenAddressing<Integer, Integer>(),
+                (table, keys) -> {
+                    for (int k : keys) {
+                        Integer boxed = k;
+                        table.put(boxed, boxed);
+                    }
+                    return table.size();
+                }, (size, input) -> true, true));
+        cases.add(new BenchmarkCase<>("IntIntTable.footprint",
+                (size, keys) -> new IntIntTable(),
+                (table, keys) -> {
+                    for (int k : keys) table.put(k, k);
+                    return table.size();
+                }, (size, input) -> true, true));
+        cases.add(new BenchmarkCase<>("LongObjectTable.footprint",
+                (size, keys) -> new LongObjectTable<Integer>(),
+                (table, keys) -> {
+                    for (int k : keys) table.put(k, Integer.valueOf(k));
+                    return table.size();
+                }, (size, input) -> true, true));
+        cases.add(new BenchmarkCase<>("java.util.HashMap.get",
+                (size, keys) -> {
+                    State<HashMap<Integer, Integer>> s = new State<>(new HashMap<Integer, Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.get(k);
+                    return sum;
+                }));
+
+        //colliding keys, with and without tree indexed buckets
+        for (int treeifyThreshold : new int[]{8, 0}) {
+            cases.add(new BenchmarkCase<>("HashTableSeparateChaining.get.colliding(treeify=" + treeifyThreshold + ")",
+                    (size, keys) -> {
+                        HashTableSeparateChaining<CollidingKey, Integer> table =
+                                new HashTableSeparateChaining<>(3, 0.75, 0, treeifyThreshold);
+                        CollidingKey[] colliding = new CollidingKey[keys.length];
+                        for (int i = 0; i < keys.length; i++) {
+                            colliding[i] = new CollidingKey(keys[i]);
+                            table.put(colliding[i], keys[i]);
+                        }
+                        return new Object[]{table, colliding};
+                    },
+                    (state, keys) -> {
+                        @SuppressWarnings("unchecked")
+                        HashTableSeparateChaining<CollidingKey, Integer> table =
+                                (HashTableSeparateChaining<CollidingKey, Integer>) state[0];
+                        long sum = 0;
+                        for (CollidingKey k : (CollidingKey[]) state[1]) sum += table.get(k);
+                        return sum;
+                    }));
+        }
+
+        //bulk operations, compare with the single key loops of .put, .get and .remove
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.putAll",
+                (size, keys) -> new State<>(new HashTableSeparateChaining<Integer, Integer>(), keys),
+                (s, keys) -> {
+                    s.structure.putAll(s.boxed, s.boxed);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.getAll",
+                (size, keys) -> {
+                    State<HashTableSeparateChaining<Integer, Integer>> s =
+                            new State<>(new HashTableSeparateChaining<Integer, Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> {
+                    Integer[] out = new Integer[s.boxed.length];
+                    return s.structure.getAll(s.boxed, out);
+                }));
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.remove",
+                (size, keys) -> {
+                    State<HashTableSeparateChaining<Integer, Integer>> s =
+                            new State<>(new HashTableSeparateChaining<Integer, Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long removed = 0;
+                    for (Integer k : s.boxed) if (s.structure.remove(k) != null) removed++;
+                    return removed;
+                }));
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.removeAll",
+                (size, keys) -> {
+                    State<HashTableSeparateChaining<Integer, Integer>> s =
+                            new State<>(new HashTableSeparateChaining<Integer, Integer>(), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> s.structure.removeAll(s.boxed)));
+
+        //scans, copying the keys against walking the buckets in place
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.keys",
+                DataStructureBenchmarks::filledChainingTable,
+                (table, keys) -> {
+                    long sum = 0;
+                    for (Integer k : table.keys()) sum += k;
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.keyIterator",
+                DataStructureBenchmarks::filledChainingTable,
+                (table, keys) -> {
+                    long sum = 0;
+                    for (Iterator<Integer> it = table.keyIterator(); it.hasNext(); ) sum += it.next();
+                    return sum;
+                }));
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining.stream.parallel",
+                DataStructureBenchmarks::filledChainingTable,
+                (table, keys) -> table.stream().parallel().mapToLong(Map.Entry::getKey).sum()));
+
+        //overhead of recordStats, compare with HashTableSeparateChaining.put and .get
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining(stats).put",
+                (size, keys) -> new State<>(new HashTableSeparateChaining<Integer, Integer>(3, 0.75, 0, 8, true), keys),
+                (s, keys) -> {
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s.structure.size();
+                }));
+        cases.add(new BenchmarkCase<>("HashTableSeparateChaining(stats).get",
+                (size, keys) -> {
+                    State<HashTableSeparateChaining<Integer, Integer>> s =
+                            new State<>(new HashTableSeparateChaining<Integer, Integer>(3, 0.75, 0, 8, true), keys);
+                    for (Integer k : s.boxed) s.structure.put(k, k);
+                    return s;
+                },
+                (s, keys) -> {
+                    long sum = 0;
+                    for (Integer k : s.boxed) sum += s.structure.get(k);
+                    return sum;
+                }));
+
+        //UnionFind, one operation is a unify followed by a find
+        cases.add(new BenchmarkCase<>("UnionFind.unify+find",
+                (size, keys) -> new UnionFind(size),
+                (unionFind, keys) -> {
+                    long sum = 0;
+                    for (int i = 0; i < keys.length; i++) {
+                        unionFind.unify(keys[i], keys[i / 2]);
+                        sum += unionFind.find(keys[(i * 7) % keys.length]);
+                    }
+                    return sum + unionFind.getComponentsTotal();
+                }));
+
+        return cases;
+    }
+}
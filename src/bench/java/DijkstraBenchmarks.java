@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class DijkstraBenchmarks {
+    /**
+     * Single source shortest paths over a random directed graph with size nodes and
+     * 10 edges per node, e.g. 10M edges for a size of 1e6, run with each heap.
+     * One operation is one node of the graph; the key order is not used, so only
+     * RANDOM input is run.
+     */
+    private static final int EDGES_PER_NODE = 10;
+
+    //adjacency in compressed rows: the edges of node v are first[v] .. first[v+1]-1
+    static final class Graph {
+        final int[] first, target;
+        final long[] weight;
+
+        Graph(int nodes, long seed) {
+            Random random = new Random(seed);
+            first = new int[nodes + 1];
+            target = new int[nodes * EDGES_PER_NODE];
+            weight = new long[nodes * EDGES_PER_NODE];
+            for (int v = 0; v < nodes; v++) {
+                first[v + 1] = first[v] + EDGES_PER_NODE;
+                for (int e = first[v]; e < first[v + 1]; e++) {
+                    target[e] = random.nextInt(nodes);
+                    weight[e] = 1 + random.nextInt(100);
+                }
+            }
+        }
+
+        int nodes() {
+            return first.length - 1;
+        }
+    }
+
+    //a node and its tentative distance, the wrapper the generic queues need
+    static final class NodeDistance implements Comparable<NodeDistance> {
+        final int node;
+        final double distance;
+
+        NodeDistance(int node, double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+
+        @Override public int compareTo(NodeDistance other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+
+    static long checksum(double[] distances) {
+        long sum = 0;
+        for (double d : distances) if (d != Double.POSITIVE_INFINITY) sum += (long) d;
+        return sum;
+    }
+
+    static double[] unreached(int nodes) {
+        double[] distances = new double[nodes];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        return distances;
+    }
+
+    static long withDoubleIntMinHeap(Graph g) {
+        double[] dist = unreached(g.nodes());
+        DoubleIntMinHeap heap = new DoubleIntMinHeap();
+        dist[0] = 0;
+        heap.add(0, 0);
+        while (!heap.isEmpty()) {
+            double d = heap.peekPriority();
+            int v = heap.poll();
+            //a stale entry left behind by a shorter path found later
+            if (d > dist[v]) continue;
+            for (int e = g.first[v]; e < g.first[v + 1]; e++) {
+                double nd = d + g.weight[e];
+                if (nd < dist[g.target[e]]) {
+                    dist[g.target[e]] = nd;
+                    heap.add(nd, g.target[e]);
+                }
+            }
+        }
+        return checksum(dist);
+    }
+
+    static long withLongIntMinHeap(Graph g) {
+        long[] dist = new long[g.nodes()];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        LongIntMinHeap heap = new LongIntMinHeap();
+        dist[0] = 0;
+        heap.add(0, 0);
+        while (!heap.isEmpty()) {
+            long d = heap.peekPriority();
+            int v = heap.poll();
+            if (d > dist[v]) continue;
+            for (int e = g.first[v]; e < g.first[v + 1]; e++) {
+                long nd = d + g.weight[e];
+                if (nd < dist[g.target[e]]) {
+                    dist[g.target[e]] = nd;
+                    heap.add(nd, g.target[e]);
+                }
+            }
+        }
+        long sum = 0;
+        for (long d : dist) if (d != Long.MAX_VALUE) sum += d;
+        return sum;
+    }
+
+    static long withIndexedPriorityQueue(Graph g) {
+        double[] dist = unreached(g.nodes());
+        IndexedPriorityQueue<Double> queue = new IndexedPriorityQueue<>(g.nodes());
+        dist[0] = 0;
+        queue.insert(0, 0.0);
+        while (!queue.isEmpty()) {
+            int v = queue.pollMinId();
+            for (int e = g.first[v]; e < g.first[v + 1]; e++) {
+                int w = g.target[e];
+                double nd = dist[v] + g.weight[e];
+                if (nd < dist[w]) {
+                    if (queue.contains(w)) queue.decrease(w, nd);
+                    //a node is only polled once, at its final distance, so it cannot come back here
+                    else queue.insert(w, nd);
+                    dist[w] = nd;
+                }
+            }
+        }
+        return checksum(dist);
+    }
+
+    static long withJavaUtilPriorityQueue(Graph g) {
+        double[] dist = unreached(g.nodes());
+        java.util.PriorityQueue<NodeDistance> queue = new java.util.PriorityQueue<>();
+        dist[0] = 0;
+        queue.add(new NodeDistance(0, 0));
+        while (!queue.isEmpty()) {
+            NodeDistance top = queue.poll();
+            if (top.distance > dist[top.node]) continue;
+            for (int e = g.first[top.node]; e < g.first[top.node + 1]; e++) {
+                double nd = top.distance + g.weight[e];
+                if (nd < dist[g.target[e]]) {
+                    dist[g.target[e]] = nd;
+                    queue.add(new NodeDistance(g.target[e], nd));
+                }
+            }
+        }
+        return checksum(dist);
+    }
+
+    static long withPriorityQueue(Graph g) {
+        double[] dist = unreached(g.nodes());
+        PriorityQueue<NodeDistance> queue = new PriorityQueue<>();
+        dist[0] = 0;
+        queue.add(new NodeDistance(0, 0));
+        while (!queue.isEmpty()) {
+            NodeDistance top = queue.poll();
+            if (top.distance > dist[top.node]) continue;
+            for (int e = g.first[top.node]; e < g.first[top.node + 1]; e++) {
+                double nd = top.distance + g.weight[e];
+                if (nd < dist[g.target[e]]) {
+                    dist[g.target[e]] = nd;
+                    queue.add(new NodeDistance(g.target[e], nd));
+                }
+            }
+        }
+        return checksum(dist);
+    }
+
+    private static BenchmarkCase<Graph> dijkstra(String name, BenchmarkCase.Run<Graph> run, int maxSize) {
+        return new BenchmarkCase<>("Dijkstra." + name,
+                (size, keys) -> new Graph(size, 42),
+                run,
+                (size, input) -> input == BenchmarkInput.RANDOM && size <= maxSize);
+    }
+
+    static List<BenchmarkCase<?>> cases() {
+        List<BenchmarkCase<?>> cases = new ArrayList<>();
+        cases.add(dijkstra("DoubleIntMinHeap", (g, keys) -> withDoubleIntMinHeap(g), Integer.MAX_VALUE));
+        cases.add(dijkstra("LongIntMinHeap", (g, keys) -> withLongIntMinHeap(g), Integer.MAX_VALUE));
+        cases.add(dijkstra("IndexedPriorityQueue", (g, keys) -> withIndexedPriorityQueue(g), Integer.MAX_VALUE));
+        cases.add(dijkstra("java.util.PriorityQueue", (g, keys) -> withJavaUtilPriorityQueue(g), Integer.MAX_VALUE));
+        //the position map of PriorityQueue makes larger graphs take minutes per run
+        cases.add(dijkstra("PriorityQueue", (g, keys) -> withPriorityQueue(g), 100_000));
+        return cases;
+    }
+}
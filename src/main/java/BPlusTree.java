@@ -0,0 +1,350 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class BPlusTree<T extends Comparable<T>> implements Iterable<T> {
+    /**
+     * Implementation of an ordered set as a B+ tree.
+     *
+     * Every node keeps up to order keys side by side in one array, so a lookup
+     * binary searches a few contiguous arrays instead of chasing one node per key:
+     * with the default order of 64 a tree of 1e8 keys is five levels deep. All the
+     * elements live in the leaves, which are linked left to right, so in-order and
+     * range scans walk arrays and leaf links only. Inner nodes hold separators: the
+     * smallest key of the subtree to their right at the time it was split.
+     *
+     * A node other than the root never drops below order/2 keys; remove borrows a
+     * key from a sibling or merges with it when that would happen, so the tree
+     * stays O(log(n)) deep and its nodes at least half full.
+     *
+     * It has the add/remove/contains semantics of BinarySearchTree. MappedBPlusTree
+     * is the long keyed variant whose nodes are pages of a memory mapped file.
+     */
+    private static final int DEFAULT_ORDER = 64;
+
+    private static final class Node {
+        //one slot more than the order, to hold a key before the node is split
+        final Object[] keys;
+        //null for a leaf
+        final Node[] children;
+        //next leaf to the right
+        Node next;
+        int count;
+
+        Node(int order, boolean leaf) {
+            keys = new Object[order + 1];
+            children = leaf ? null : new Node[order + 2];
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+    }
+
+    private final int order, minKeys;
+    private Node root;
+    private int size = 0, height = 1;
+    private int modCount = 0;
+
+    //set by insert when a node had to split: the new right node and its separator
+    private Node splitNode;
+    private Object splitKey;
+
+    public BPlusTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    //order is the largest number of keys a node holds
+    public BPlusTree(int order) {
+        if (order < 3) throw new IllegalArgumentException("Illegal order " + order);
+        this.order = order;
+        minKeys = order / 2;
+        root = new Node(order, true);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int order() {
+        return order;
+    }
+
+    public void clear() {
+        root = new Node(order, true);
+        size = 0;
+        height = 1;
+        modCount++;
+    }
+
+    public boolean contains(T element) {
+        if (element == null) return false;
+        Node node = root;
+        while (!node.isLeaf()) node = node.children[childIndex(node, element)];
+        return search(node, element) >= 0;
+    }
+
+    public boolean add(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        int before = size;
+        if (insert(root, element)) {
+            //the root split: grow the tree by one level
+            Node newRoot = new Node(order, false);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = splitNode;
+            newRoot.count = 1;
+            root = newRoot;
+            height++;
+            splitNode = null;
+            splitKey = null;
+        }
+        return size != before;
+    }
+
+    public boolean remove(T element) {
+        if (element == null || !delete(root, element)) return false;
+        if (!root.isLeaf() && root.count == 0) {
+            //the root lost its last separator: shrink the tree by one level
+            root = root.children[0];
+            height--;
+        }
+        return true;
+    }
+
+    public T first() {
+        if (isEmpty()) return null;
+        Node node = root;
+        while (!node.isLeaf()) node = node.children[0];
+        return keyAt(node, 0);
+    }
+
+    public T last() {
+        if (isEmpty()) return null;
+        Node node = root;
+        while (!node.isLeaf()) node = node.children[node.count];
+        return keyAt(node, node.count - 1);
+    }
+
+    //Iterate over the elements in order, along the leaf links
+    @Override
+    public Iterator<T> iterator() {
+        Node node = root;
+        while (!node.isLeaf()) node = node.children[0];
+        return new LeafIterator(node, 0, null);
+    }
+
+    //Iterate in order over the elements between lo and hi, both included
+    public Iterator<T> rangeIterator(T lo, T hi) {
+        if (lo == null || hi == null) throw new IllegalArgumentException();
+        Node node = root;
+        while (!node.isLeaf()) node = node.children[childIndex(node, lo)];
+        int i = search(node, lo);
+        return new LeafIterator(node, i >= 0 ? i : -i - 1, hi);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T keyAt(Node node, int i) {
+        return (T) node.keys[i];
+    }
+
+    //Binary search of the keys of a node: the index of key, or -(insertion point) - 1
+    private int search(Node node, T key) {
+        int lo = 0, hi = node.count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = keyAt(node, mid).compareTo(key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -lo - 1;
+    }
+
+    //The child of an inner node whose subtree holds key: separators equal to key lead right
+    private int childIndex(Node node, T key) {
+        int i = search(node, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    //Insert into the subtree of node, returns whether node split into splitNode
+    private boolean insert(Node node, T element) {
+        if (node.isLeaf()) {
+            int i = search(node, element);
+            if (i >= 0) return false;
+            insertKey(node, -i - 1, element);
+            size++;
+            modCount++;
+            if (node.count <= order) return false;
+            splitLeaf(node);
+            return true;
+        }
+        int c = childIndex(node, element);
+        if (!insert(node.children[c], element)) return false;
+        //a child split: take its separator and new right sibling
+        System.arraycopy(node.children, c + 1, node.children, c + 2, node.count - c);
+        node.children[c + 1] = splitNode;
+        insertKey(node, c, splitKey);
+        if (node.count <= order) return false;
+        splitInner(node);
+        return true;
+    }
+
+    private void insertKey(Node node, int i, Object key) {
+        System.arraycopy(node.keys, i, node.keys, i + 1, node.count - i);
+        node.keys[i] = key;
+        node.count++;
+    }
+
+    private void splitLeaf(Node node) {
+        Node right = new Node(order, true);
+        int half = node.count / 2;
+        right.count = node.count - half;
+        System.arraycopy(node.keys, half, right.keys, 0, right.count);
+        clearKeys(node, half);
+        right.next = node.next;
+        node.next = right;
+        splitNode = right;
+        splitKey = right.keys[0];
+    }
+
+    //The middle key moves up, the keys and children after it go to a new right node
+    private void splitInner(Node node) {
+        Node right = new Node(order, false);
+        int half = node.count / 2;
+        splitKey = node.keys[half];
+        right.count = node.count - half - 1;
+        System.arraycopy(node.keys, half + 1, right.keys, 0, right.count);
+        System.arraycopy(node.children, half + 1, right.children, 0, right.count + 1);
+        for (int i = half + 1; i <= node.count; i++) node.children[i] = null;
+        clearKeys(node, half);
+        splitNode = right;
+    }
+
+    //Drop the keys of a node from index count on
+    private void clearKeys(Node node, int count) {
+        for (int i = count; i < node.count; i++) node.keys[i] = null;
+        node.count = count;
+    }
+
+    //Delete from the subtree of node, fixing any child left with too few keys
+    private boolean delete(Node node, T element) {
+        if (node.isLeaf()) {
+            int i = search(node, element);
+            if (i < 0) return false;
+            removeKey(node, i);
+            size--;
+            modCount++;
+            return true;
+        }
+        int c = childIndex(node, element);
+        if (!delete(node.children[c], element)) return false;
+        if (node.children[c].count < minKeys) fixUnderflow(node, c);
+        return true;
+    }
+
+    private void removeKey(Node node, int i) {
+        System.arraycopy(node.keys, i + 1, node.keys, i, node.count - i - 1);
+        node.keys[--node.count] = null;
+    }
+
+    //Refill child c of parent from a sibling that can spare a key, or merge it with one
+    private void fixUnderflow(Node parent, int c) {
+        Node child = parent.children[c];
+        Node left = c > 0 ? parent.children[c - 1] : null;
+        Node right = c < parent.count ? parent.children[c + 1] : null;
+        if (left != null && left.count > minKeys) {
+            if (child.isLeaf()) {
+                insertKey(child, 0, left.keys[left.count - 1]);
+                removeKey(left, left.count - 1);
+                parent.keys[c - 1] = child.keys[0];
+            } else {
+                //rotate right through the parent separator
+                System.arraycopy(child.children, 0, child.children, 1, child.count + 1);
+                child.children[0] = left.children[left.count];
+                left.children[left.count] = null;
+                insertKey(child, 0, parent.keys[c - 1]);
+                parent.keys[c - 1] = left.keys[left.count - 1];
+                removeKey(left, left.count - 1);
+            }
+        } else if (right != null && right.count > minKeys) {
+            if (child.isLeaf()) {
+                insertKey(child, child.count, right.keys[0]);
+                removeKey(right, 0);
+                parent.keys[c] = right.keys[0];
+            } else {
+                //rotate left through the parent separator
+                insertKey(child, child.count, parent.keys[c]);
+                child.children[child.count] = right.children[0];
+                parent.keys[c] = right.keys[0];
+                System.arraycopy(right.children, 1, right.children, 0, right.count);
+                right.children[right.count] = null;
+                removeKey(right, 0);
+            }
+        } else if (left != null) merge(parent, c - 1);
+        else merge(parent, c);
+    }
+
+    //Merge child i + 1 of parent into child i, and drop the separator between them
+    private void merge(Node parent, int i) {
+        Node left = parent.children[i], right = parent.children[i + 1];
+        if (left.isLeaf()) {
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            left.count += right.count;
+            left.next = right.next;
+        } else {
+            left.keys[left.count++] = parent.keys[i];
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            System.arraycopy(right.children, 0, left.children, left.count, right.count + 1);
+            left.count += right.count;
+        }
+        removeKey(parent, i);
+        System.arraycopy(parent.children, i + 2, parent.children, i + 1, parent.count - i);
+        parent.children[parent.count + 1] = null;
+    }
+
+    //Walks the leaf links from a starting position, up to an optional bound
+    private class LeafIterator implements Iterator<T> {
+        final T hi;
+        final int expectedModCount = modCount;
+        Node leaf;
+        int index;
+
+        LeafIterator(Node leaf, int index, T hi) {
+            this.leaf = leaf;
+            this.index = index;
+            this.hi = hi;
+            skipExhausted();
+        }
+
+        //move past leaves with nothing left to return
+        private void skipExhausted() {
+            while (leaf != null && index >= leaf.count) {
+                leaf = leaf.next;
+                index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (expectedModCount != modCount) throw new ConcurrentModificationException();
+            return leaf != null && (hi == null || keyAt(leaf, index).compareTo(hi) <= 0);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T element = keyAt(leaf, index++);
+            skipExhausted();
+            return element;
+        }
+    }
+}
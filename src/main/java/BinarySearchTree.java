@@ -1,10 +1,48 @@
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-
-public class BinarySearchTree <T extends Comparable<T>> {
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class BinarySearchTree <T extends Comparable<T>> implements Iterable<T> {
     /**
      * Implementation of a Binary Search Tree(BST)
      *
+     * A balanced tree keeps the AVL invariant: the heights of the two
+     * subtrees of any node differ by at most one, so the height stays O(log(n)).
+     * Ordered keys such as timestamps or sequence ids then cost O(log(n)) per
+     * operation instead of turning the tree into a list. Each node stores the
+     * height of its subtree, so height() is O(1) for a balanced tree.
+     *
+     * add, remove and computeIfAbsent find their node and change the tree in one
+     * iterative descent: the nodes passed on the way down are kept in a reusable
+     * path array, and a balanced tree is repaired by walking that path back up.
+     * addAll resumes each descent of an ascending run from that path, so sorted
+     * batches skip the levels the previous element shares with the next one.
+     *
+     * Every node also counts the nodes of its subtree, which gives the order
+     * statistics rank and select, and countInRange, in O(height). floor, ceiling,
+     * higher and lower, and rangeIterator, which yields the elements between two
+     * bounds lazily, cost O(height) plus the elements returned.
+     *
+     * iterator(order) walks the tree lazily in any TreeTraversalEnum order. The
+     * depth first orders keep the pending nodes in an array stack no deeper than
+     * the tree, level order keeps one level in an array queue, so no step
+     * allocates. The tree itself iterates in order, and its spliterator splits at
+     * subtrees, using the subtree sizes for exact estimates, so stream().parallel()
+     * divides a balanced tree into halves for fork-join.
+     *
+     * fromSorted builds a perfectly balanced tree from ascending elements in O(n),
+     * without a single comparison between them beyond checking the order. union,
+     * intersection and difference merge the in-order sequences of two trees and
+     * build the result the same way, in O(n + m).
+     *
      * Author: Irakoze Loraine, mukezwa@gmail.com
      */
 
@@ -18,6 +56,10 @@ public class BinarySearchTree <T extends Comparable<T>> {
     private class Node {
         T element;
         Node left, right;
+        //height of the subtree rooted at this node, only maintained by a balanced tree
+        int height = 1;
+        //number of nodes in the subtree rooted at this node
+        int size = 1;
         public Node (Node left, Node right, T element) {
             this.element = element;
             this.left = left;
@@ -26,6 +68,58 @@ public class BinarySearchTree <T extends Comparable<T>> {
     }
     private int totalNodes = 0;
     private Node root = null;
+    private final boolean balanced;
+    //nodes from the root down to the last one reached, and the side taken at each of them
+    private Node[] path = newNodeArray(16);
+    private boolean[] wentLeft = new boolean[16];
+    //the deepest level above each one where the path turned left, -1 if none
+    private int[] leftAbove = new int[16];
+    private int depth = 0;
+    //changes on every descent, so that a caller can tell its path was overwritten meanwhile
+    private int pathVersion = 0;
+    //changes on every add or remove, so that computeIfAbsent and iterators can fail fast
+    private int modCount = 0;
+
+    public BinarySearchTree() {
+        this(false);
+    }
+    public BinarySearchTree(boolean balanced) {
+        this.balanced = balanced;
+    }
+
+    //Build a tree from strictly ascending elements in O(n)
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(T[] sorted, boolean balanced) {
+        return build(Arrays.copyOf(sorted, sorted.length, Object[].class), sorted.length, balanced);
+    }
+
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(Iterator<? extends T> sorted, boolean balanced) {
+        Object[] elements = new Object[16];
+        int n = 0;
+        while (sorted.hasNext()) {
+            if (n == elements.length) elements = Arrays.copyOf(elements, n * 2);
+            elements[n++] = sorted.next();
+        }
+        return build(elements, n, balanced);
+    }
+
+    public static <T extends Comparable<T>> BinarySearchTree<T> fromSorted(Stream<? extends T> sorted, boolean balanced) {
+        return fromSorted(sorted.iterator(), balanced);
+    }
+
+    //The elements in either tree
+    public BinarySearchTree<T> union(BinarySearchTree<T> other) {
+        return merge(other, true, true, true);
+    }
+
+    //The elements in both trees
+    public BinarySearchTree<T> intersection(BinarySearchTree<T> other) {
+        return merge(other, false, true, false);
+    }
+
+    //The elements of this tree that are not in the other one
+    public BinarySearchTree<T> difference(BinarySearchTree<T> other) {
+        return merge(other, true, false, false);
+    }
 
     public int size() {
         return totalNodes;
@@ -33,304 +127,674 @@ public class BinarySearchTree <T extends Comparable<T>> {
     public boolean isEmpty() {
         return size() == 0;
     }
+    public boolean isBalanced() {
+        return balanced;
+    }
 
-    //Add an element to this binary tree
+    //Add an element to this binary tree, in a single descent
     public boolean add(T element) {
-        //check if element already exists
-        if (contains(element)) return false;
-        else {
-            root = add(root, element);
-            totalNodes++;
-            return true;
+        if (element == null) throw new IllegalArgumentException();
+        if (descend(element, 0, root)) return false;
+        link(element);
+        return true;
+    }
+
+    //Return the element equal to key, or add the one made by mappingFunction if there is none.
+    //mappingFunction must not add to or remove from the tree: that throws ConcurrentModificationException
+    public T computeIfAbsent(T key, Function<? super T, ? extends T> mappingFunction) {
+        if (key == null) throw new IllegalArgumentException();
+        if (descend(key, 0, root)) return path[depth - 1].element;
+        int expectedModCount = modCount, expectedPathVersion = pathVersion;
+        T element = mappingFunction.apply(key);
+        if (expectedModCount != modCount) throw new ConcurrentModificationException();
+        if (element == null) return null;
+        if (element.compareTo(key) != 0)
+            throw new IllegalArgumentException("The mapped element does not compare equal to its key");
+        //an add or remove that changed nothing still reuses path, so find the empty slot again
+        if (pathVersion != expectedPathVersion) descend(key, 0, root);
+        link(element);
+        return element;
+    }
+
+    //Add every element, returns how many were new. Ascending runs resume each descent
+    //from the path of the previous element instead of the root
+    public int addAll(Iterable<? extends T> elements) {
+        int added = 0;
+        //the levels of path that still lead to the previous element
+        int valid = 0;
+        T previous = null;
+        for (T element : elements) {
+            if (element == null) throw new IllegalArgumentException();
+            int from = 0;
+            if (previous != null && valid > 0 && element.compareTo(previous) >= 0)
+                from = resumeLevel(element, valid);
+            if (descend(element, from, from == 0 ? root : path[from])) valid = depth;
+            else {
+                valid = link(element);
+                added++;
+            }
+            previous = element;
         }
+        return added;
+    }
+
+    public int addAll(T[] elements) {
+        return addAll(Arrays.asList(elements));
     }
 
-    //Remove an element to this binary tree
+    //Remove an element from this binary tree, in a single descent
     public boolean remove(T element) {
-        //check if element already exists
-        if (contains(element)) return false;
-        else {
-            root = remove(root, element);
-            totalNodes--;
-            return true;
+        if (element == null || !descend(element, 0, root)) return false;
+        int level = depth - 1;
+        Node node = path[level];
+        //if the node to remove has two descendants, it takes the element of the
+        //smallest node in its right subtree, which is removed instead
+        if (node.left != null && node.right != null) {
+            wentLeft[level] = false;
+            Node smallest = node.right;
+            while (true) {
+                push(++level, smallest);
+                if (smallest.left == null) break;
+                wentLeft[level] = true;
+                smallest = smallest.left;
+            }
+            node.element = smallest.element;
+            node = smallest;
         }
+        relink(level, node.left != null ? node.left : node.right);
+        node.element = null;
+        node.left = node.right = null;
+        for (int i = 0; i < level; i++) path[i].size--;
+        totalNodes--;
+        modCount++;
+        if (balanced) fixUp(level - 1);
+        return true;
     }
 
     //Check if elements exist in the binary tree
     public  boolean contains(T element) {
-        return contains(root, element);
+        return find(element) != null;
+    }
+
+    //Find the element of the tree that compares equal to the given one
+    public T find(T element) {
+        Node node = root;
+        while (node != null) {
+            int cmp = element.compareTo(node.element);
+            if (cmp < 0) node = node.left;
+            else if (cmp > 0) node = node.right;
+            else return node.element;
+        }
+        return null;
     }
 
     //Calculate the height of the tree
     public int height() {
-        return height(root);
+        //a balanced tree keeps the height of every subtree in its root
+        if (balanced) return nodeHeight(root);
+        //otherwise count the levels one at a time, the tree may be too deep to recurse
+        int height = 0;
+        Queue<Node> level = new Queue<>();
+        if (root != null) level.offer(root);
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                Node node = level.poll();
+                if (node.left != null) level.offer(node.left);
+                if (node.right != null) level.offer(node.right);
+            }
+        }
+        return height;
     }
 
-    //Traverse through the binary tree
-    public void traverse(TreeTraversalEnum order) {
+    //Number of elements smaller than the given one
+    public int rank(T element) {
+        return countBelow(element, false);
+    }
+
+    //The k-th smallest element, counting from 0
+    public T select(int k) {
+        if (k < 0 || k >= totalNodes) throw new IndexOutOfBoundsException("Index: " + k + ", Size: " + totalNodes);
+        Node node = root;
+        while (true) {
+            int leftSize = nodeSize(node.left);
+            if (k < leftSize) node = node.left;
+            else if (k > leftSize) {
+                k -= leftSize + 1;
+                node = node.right;
+            }
+            else return node.element;
+        }
+    }
+
+    //Number of elements between lo and hi, both included
+    public int countInRange(T lo, T hi) {
+        if (lo.compareTo(hi) > 0) return 0;
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    //The largest element smaller than or equal to the given one, or null
+    public T floor(T element) {
+        return closest(element, false, true);
+    }
+
+    //The smallest element greater than or equal to the given one, or null
+    public T ceiling(T element) {
+        return closest(element, true, true);
+    }
+
+    //The smallest element greater than the given one, or null
+    public T higher(T element) {
+        return closest(element, true, false);
+    }
+
+    //The largest element smaller than the given one, or null
+    public T lower(T element) {
+        return closest(element, false, false);
+    }
+
+    //Iterate in order over the elements between lo and hi, both included
+    public Iterator<T> rangeIterator(T lo, T hi) {
+        if (lo == null || hi == null) throw new IllegalArgumentException();
+        return new InOrderIterator(lo, hi);
+    }
+
+    //Iterate over the elements in order
+    @Override
+    public Iterator<T> iterator() {
+        return new InOrderIterator(null, null);
+    }
+
+    //Iterate over the elements in the given traversal order
+    public Iterator<T> iterator(TreeTraversalEnum order) {
         switch (order) {
             case PRE_ORDER:
-                preorder(root);
-                break;
+                return new PreOrderIterator();
             case IN_ORDER:
-                inorder(root);
-                break;
+                return new InOrderIterator(null, null);
             case POST_ORDER:
-                postorder(root);
-                break;
+                return new PostOrderIterator();
             case LEVEL_ORDER:
-                break;
+                return new LevelOrderIterator();
             default:
-                System.out.println("Unknown Input");
+                throw new IllegalArgumentException("Unknown order " + order);
         }
     }
 
-    //Add the element at the corresponding node
-    private Node add(Node node, T element) {
-        if (node == null)
-            node = new Node(null, null, element);
-        else {
-            if (element.compareTo(node.element) < 0)
-                node.left = add(node.left, element);
-            else
-                node.right = add(node.right, element);
-        }
-        return node;
+    @Override
+    public Spliterator<T> spliterator() {
+        return new InOrderSpliterator();
     }
 
-    //Remove the element at the corresponding node
-    private Node remove(Node node, T element) {
-        if (node == null) return null;
-
-        int cmp = element.compareTo(node.element);
+    //Only the in-order spliterator splits at subtrees, the others split the way an iterator does
+    public Spliterator<T> spliterator(TreeTraversalEnum order) {
+        if (order == TreeTraversalEnum.IN_ORDER) return spliterator();
+        return Spliterators.spliterator(iterator(order), totalNodes,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
 
-        if (cmp < 0)
-            node.left = remove(node.left, element);
-        else if (cmp > 0)
-            node.right = remove(node.right, element);
-        //If we find the node we wish to remove
-        else {
-            if (node.left == null) {
-                Node right = node.right;
-                node.element = null;
-                node = null;
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
 
-                return  right;
-            }
-            else if (node.right == null) {
-                Node left = node.left;
-                node.element = null;
-                node = null;
+    //Traverse through the binary tree
+    public void traverse(TreeTraversalEnum order) {
+        Iterator<T> iterator = iterator(order);
+        while (iterator.hasNext()) System.out.println(iterator.next());
+    }
 
-                return left;
-            }
-            //if the node to remove has two descendants
-            else {
-                //find the largest node in the left subtree
-                /*
-                    Node tmp = findLargestLeft(node.left);
-                    //copy the data to the node
-                    node.element = tmp.element;
-                    //remove the node we've found
-                    node.left = remove(node.left, tmp.element);
-                  */
-                //find the smallest node in the right subtree
-                Node tmp = findSmallestRight(node.right);
-                //copy the data to the node
-                node.element = tmp.element;
-                //remove the node we've found
-                node.right = remove(node.right, tmp.element);
+    //Walk down from node, which sits at the given level of the path, to the slot of key.
+    //Returns whether an equal element was found, at path[depth-1]; otherwise
+    //path[depth-1] is the parent of the empty slot and wentLeft[depth-1] its side
+    private boolean descend(T key, int level, Node node) {
+        pathVersion++;
+        while (node != null) {
+            push(level, node);
+            int cmp = key.compareTo(node.element);
+            if (cmp == 0) {
+                depth = level + 1;
+                return true;
             }
+            wentLeft[level++] = cmp < 0;
+            node = cmp < 0 ? node.left : node.right;
         }
-        return node;
+        depth = level;
+        return false;
     }
 
-    //Find the largest left node
-    private Node findLargestLeft(Node node) {
-        Node current = node;
-        while (current.right != null)
-            current = current.right;
-        return current;
+    //Put a new node in the empty slot found by descend, returns how many levels
+    //of the path still lead to it after rebalancing
+    private int link(T element) {
+        Node node = new Node(null, null, element);
+        relink(depth, node);
+        push(depth, node);
+        for (int i = 0; i < depth; i++) path[i].size++;
+        totalNodes++;
+        modCount++;
+        return balanced ? fixUp(depth - 1) : depth + 1;
     }
 
-    //Find the smallest right node
-    private Node findSmallestRight(Node node) {
-        Node current = node;
-        while (current.left != null)
-            current = current.left;
-        return current;
+    //The deepest level of the first valid levels of the path whose subtree can hold
+    //key, given that key is not smaller than the element the path leads to
+    private int resumeLevel(T key, int valid) {
+        int level = valid - 1;
+        //only the nodes the path turned left at bound the subtrees below them from above
+        for (int i = leftAbove[level]; i >= 0; i = leftAbove[i]) {
+            if (key.compareTo(path[i].element) < 0) return level;
+            level = i;
+        }
+        return level;
     }
 
-    //Check if elements exist in any node of the binary tree
-    private boolean contains(Node node, T element) {
-        if (node == null) return false;
-
-        int cmp = element.compareTo(node.element);
+    private void push(int level, Node node) {
+        if (level == path.length) {
+            path = Arrays.copyOf(path, level * 2);
+            wentLeft = Arrays.copyOf(wentLeft, level * 2);
+            leftAbove = Arrays.copyOf(leftAbove, level * 2);
+        }
+        path[level] = node;
+        leftAbove[level] = level == 0 ? -1 : wentLeft[level - 1] ? level - 1 : leftAbove[level - 1];
+    }
 
-        if (cmp < 0) return contains(node.left, element);
-        else if (cmp > 0) return contains(node.right, element);
-        else return true;
+    //Make node the subtree at the given level of the path
+    private void relink(int level, Node node) {
+        if (level == 0) root = node;
+        else if (wentLeft[level - 1]) path[level - 1].left = node;
+        else path[level - 1].right = node;
     }
 
-    //Calculate the height per every node in the tree
-    private int height(Node node) {
-        if (node == null) return 0;
-        return Math.max(height(node.left), height(node.right))+1;
+    //Rebalance the path from the given level up to the root, stopping once a
+    //subtree keeps its height. Returns how many levels of the path are still valid
+    private int fixUp(int level) {
+        int valid = level + 2;
+        for (int i = level; i >= 0; i--) {
+            Node node = path[i];
+            int height = node.height;
+            Node subtree = rebalance(node);
+            if (subtree != node) {
+                relink(i, subtree);
+                path[i] = subtree;
+                valid = i + 1;
+            } else if (node.height == height) break;
+        }
+        return valid;
     }
 
-    //Pre-Order Traversal using recursive functions
-    private void preorder(Node node) {
-        if (node == null) return;
-        System.out.println(node.element);
-        preorder(node.left);
-        preorder(node.right);
+    //Height of a subtree as stored in its root
+    private int nodeHeight(Node node) {
+        return node == null ? 0 : node.height;
     }
 
-    //In-Order Traversal using recursive functions
-    private void inorder(Node node) {
-        if (node == null) return;
-        inorder(node.left);
-        System.out.println(node.element);
-        inorder(node.right);
+    private int nodeSize(Node node) {
+        return node == null ? 0 : node.size;
     }
 
-    //Post-Order Traversal using recursive functions
-    private void postorder(Node node) {
-        if (node == null) return;
-        postorder(node.left);
-        postorder(node.right);
-        System.out.println(node.element);
+    //A tree with the first n elements, which must be strictly ascending
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> BinarySearchTree<T> build(Object[] elements, int n, boolean balanced) {
+        for (int i = 0; i < n; i++) {
+            if (elements[i] == null) throw new IllegalArgumentException("Null element at " + i);
+            if (i > 0 && ((T) elements[i - 1]).compareTo((T) elements[i]) >= 0)
+                throw new IllegalArgumentException("Elements are not strictly ascending at " + i);
+        }
+        BinarySearchTree<T> tree = new BinarySearchTree<>(balanced);
+        tree.root = tree.buildSubtree(elements, 0, n);
+        tree.totalNodes = n;
+        return tree;
     }
 
-    //Pre-Order Traversal using iterator
-    private Iterator<T> preOrderTraversal() {
-        int expectedNodeCount = totalNodes;
-        Stack<Node> stack = new Stack<>();
-        stack.push(root);
+    //Perfectly balanced subtree over elements[from, to): the middle one is its root.
+    //The recursion is O(log(n)) deep
+    @SuppressWarnings("unchecked")
+    private Node buildSubtree(Object[] elements, int from, int to) {
+        if (from >= to) return null;
+        int mid = (from + to) >>> 1;
+        Node node = new Node(buildSubtree(elements, from, mid), buildSubtree(elements, mid + 1, to), (T) elements[mid]);
+        node.height = Math.max(nodeHeight(node.left), nodeHeight(node.right)) + 1;
+        node.size = to - from;
+        return node;
+    }
 
-        return new Iterator<T>() {
-            Node temp = root;
-            @Override
-            public boolean hasNext() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
-                return root!= null && !stack.isEmpty();
+    //Walk both trees in order at once, keeping the elements found only in this one,
+    //in both, or only in the other one as asked, and build a tree of the result
+    private BinarySearchTree<T> merge(BinarySearchTree<T> other, boolean onlyThis, boolean both, boolean onlyOther) {
+        Object[] result = new Object[totalNodes + (onlyOther ? other.totalNodes : 0)];
+        int n = 0;
+        Iterator<T> a = iterator(), b = other.iterator();
+        T x = a.hasNext() ? a.next() : null, y = b.hasNext() ? b.next() : null;
+        while (x != null && y != null) {
+            int cmp = x.compareTo(y);
+            if (cmp < 0) {
+                if (onlyThis) result[n++] = x;
+                x = a.hasNext() ? a.next() : null;
+            } else if (cmp > 0) {
+                if (onlyOther) result[n++] = y;
+                y = b.hasNext() ? b.next() : null;
+            } else {
+                if (both) result[n++] = x;
+                x = a.hasNext() ? a.next() : null;
+                y = b.hasNext() ? b.next() : null;
             }
+        }
+        for (; x != null && onlyThis; x = a.hasNext() ? a.next() : null) result[n++] = x;
+        for (; y != null && onlyOther; y = b.hasNext() ? b.next() : null) result[n++] = y;
+        BinarySearchTree<T> tree = new BinarySearchTree<>(balanced);
+        tree.root = tree.buildSubtree(result, 0, n);
+        tree.totalNodes = n;
+        return tree;
+    }
 
-            @Override
-            public T next() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
+    //Refresh the height of a node and rotate it back into AVL shape if needed
+    private Node rebalance(Node node) {
+        node.height = Math.max(nodeHeight(node.left), nodeHeight(node.right)) + 1;
+        int balance = nodeHeight(node.left) - nodeHeight(node.right);
+        if (balance > 1) {
+            //left-right case: turn it into a left-left case first
+            if (nodeHeight(node.left.left) < nodeHeight(node.left.right))
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            //right-left case: turn it into a right-right case first
+            if (nodeHeight(node.right.right) < nodeHeight(node.right.left))
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
+    }
 
-                while (temp != null && temp.left != null){
-                    stack.push(temp.left);
-                    temp = temp.left;
-                }
-                Node node = stack.pop();
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.height = Math.max(nodeHeight(node.left), nodeHeight(node.right)) + 1;
+        right.height = Math.max(nodeHeight(right.left), nodeHeight(right.right)) + 1;
+        right.size = node.size;
+        node.size = nodeSize(node.left) + nodeSize(node.right) + 1;
+        return right;
+    }
 
-                if (node.right != null){
-                    stack.push(node.right);
-                    temp = node.right;
-                }
-                return node.element;
-            }
-        };
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.height = Math.max(nodeHeight(node.left), nodeHeight(node.right)) + 1;
+        left.height = Math.max(nodeHeight(left.left), nodeHeight(left.right)) + 1;
+        left.size = node.size;
+        node.size = nodeSize(node.left) + nodeSize(node.right) + 1;
+        return left;
     }
 
-    //In-Order Traversal using iterator
-    private Iterator<T> inOrderTraversal() {
-        int expectedNodeCount = totalNodes;
-        Stack<Node> stack = new Stack<>();
-        stack.push(root);
+    //Number of elements smaller than key, or smaller than or equal to it when inclusive
+    private int countBelow(T key, boolean inclusive) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.element);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) node = node.left;
+            else {
+                count += nodeSize(node.left) + 1;
+                if (cmp == 0) break;
+                node = node.right;
+            }
+        }
+        return count;
+    }
 
-        return new Iterator<T>() {
-            Node temp = root;
-            @Override
-            public boolean hasNext() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
-                return root!= null && !stack.isEmpty();
+    //The nearest element above key when above is set, otherwise below it,
+    //and key itself when inclusive and present
+    private T closest(T key, boolean above, boolean inclusive) {
+        T best = null;
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.element);
+            if (cmp == 0 && inclusive) return node.element;
+            if (above ? cmp < 0 : cmp > 0) {
+                best = node.element;
+                node = above ? node.left : node.right;
             }
+            else node = above ? node.right : node.left;
+        }
+        return best;
+    }
 
-            @Override
-            public T next() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node[] newNodeArray(int length) {
+        return (Node[]) new BinarySearchTree.Node[length];
+    }
 
-                while (temp != null && temp.left != null){
-                    stack.push(temp.left);
-                    temp = temp.left;
-                }
-                Node node = stack.pop();
+    //Common part of the traversal iterators: an array stack of pending nodes
+    private abstract class TraversalIterator implements Iterator<T> {
+        final int expectedModCount = modCount;
+        Node[] stack = newNodeArray(16);
+        int top = 0;
+
+        void push(Node node) {
+            if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+            stack[top++] = node;
+        }
+
+        Node pop() {
+            Node node = stack[--top];
+            stack[top] = null;
+            return node;
+        }
 
-                if (node.right != null){
-                    stack.push(node.right);
-                    temp = node.right;
+        void checkForComodification() {
+            if (expectedModCount != modCount) throw new ConcurrentModificationException();
+        }
+    }
+
+    //In-order iterator over [lo, hi], a null bound leaves that side open. The stack
+    //holds the left spine of the rest of the range, so it never grows past the height
+    private class InOrderIterator extends TraversalIterator {
+        final T hi;
+
+        InOrderIterator(T lo, T hi) {
+            this.hi = hi;
+            Node node = root;
+            while (node != null) {
+                if (lo == null || lo.compareTo(node.element) <= 0) {
+                    push(node);
+                    node = node.left;
                 }
-                return node.element;
+                else node = node.right;
             }
-        };
+        }
+
+        @Override
+        public boolean hasNext() {
+            checkForComodification();
+            return top > 0 && (hi == null || stack[top - 1].element.compareTo(hi) <= 0);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node node = pop();
+            for (Node next = node.right; next != null; next = next.left) push(next);
+            return node.element;
+        }
     }
 
-    //Pre-Order Traversal using iterator
-    private Iterator<T> postOrderTraversal() {
-        int expectedNodeCount = totalNodes;
-        Stack<Node> stack = new Stack<>();
-        stack.push(root);
+    //Visit a node, then its left subtree, then its right subtree
+    private class PreOrderIterator extends TraversalIterator {
+        PreOrderIterator() {
+            if (root != null) push(root);
+        }
 
-        return new Iterator<T>() {
-            Node temp = root;
-            @Override
-            public boolean hasNext() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
-                return root!= null && !stack.isEmpty();
-            }
+        @Override
+        public boolean hasNext() {
+            checkForComodification();
+            return top > 0;
+        }
 
-            @Override
-            public T next() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node node = pop();
+            if (node.right != null) push(node.right);
+            if (node.left != null) push(node.left);
+            return node.element;
+        }
+    }
 
-                while (temp != null && temp.left != null){
-                    stack.push(temp.left);
-                    temp = temp.left;
-                }
-                Node node = stack.pop();
+    //Visit both subtrees of a node before the node itself
+    private class PostOrderIterator extends TraversalIterator {
+        //the last node returned, which tells whether the right subtree of the top is done
+        Node last;
 
-                if (node.right != null){
-                    stack.push(node.right);
-                    temp = node.right;
-                }
-                return node.element;
+        PostOrderIterator() {
+            pushLeftmostPath(root);
+        }
+
+        //Push the path down to the first node in post-order, preferring left children
+        private void pushLeftmostPath(Node node) {
+            while (node != null) {
+                push(node);
+                node = node.left != null ? node.left : node.right;
             }
-        };
+        }
+
+        @Override
+        public boolean hasNext() {
+            checkForComodification();
+            return top > 0;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            last = pop();
+            //coming up from a left subtree, the right sibling subtree goes next
+            if (top > 0 && stack[top - 1].left == last) pushLeftmostPath(stack[top - 1].right);
+            return last.element;
+        }
     }
 
-    //Level-Order Traversal uses iterator
-    private Iterator<T> levelOrderTraversal() {
-        int expectedNodeCount = totalNodes;
-        Stack<Node> stack = new Stack<>();
-        stack.push(root);
+    //Visit the nodes level by level, from left to right
+    private class LevelOrderIterator extends TraversalIterator {
+        //stack serves as a circular queue here, from head for top elements
+        int head = 0;
 
-        return new Iterator<T>() {
-            Node temp = root;
-            @Override
-            public boolean hasNext() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
-                return root!= null && !stack.isEmpty();
+        LevelOrderIterator() {
+            if (root != null) offer(root);
+        }
+
+        private void offer(Node node) {
+            if (top == stack.length) {
+                Node[] larger = newNodeArray(top * 2);
+                for (int i = 0; i < top; i++) larger[i] = stack[(head + i) % stack.length];
+                stack = larger;
+                head = 0;
             }
+            stack[(head + top++) % stack.length] = node;
+        }
 
-            @Override
-            public T next() {
-                if (expectedNodeCount != totalNodes) throw new ConcurrentModificationException();
+        @Override
+        public boolean hasNext() {
+            checkForComodification();
+            return top > 0;
+        }
 
-                while (temp != null && temp.left != null){
-                    stack.push(temp.left);
-                    temp = temp.left;
-                }
-                Node node = stack.pop();
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node node = stack[head];
+            stack[head] = null;
+            head = (head + 1) % stack.length;
+            top--;
+            if (node.left != null) offer(node.left);
+            if (node.right != null) offer(node.right);
+            return node.element;
+        }
+    }
 
-                if (node.right != null){
-                    stack.push(node.right);
-                    temp = node.right;
+    //In-order spliterator. Each stack entry stands for its element followed, when its
+    //withRight flag is set, by the whole right subtree of its node; the top entry comes
+    //first. trySplit hands out everything up to the last entry that still has its right
+    //subtree and keeps that subtree, so a balanced tree splits in halves
+    private class InOrderSpliterator implements Spliterator<T> {
+        final int expectedModCount;
+        Node[] stack;
+        boolean[] withRight;
+        int top = 0;
+        long remaining;
+
+        InOrderSpliterator() {
+            expectedModCount = modCount;
+            stack = newNodeArray(16);
+            withRight = new boolean[16];
+            pushLeft(root);
+            remaining = totalNodes;
+        }
+
+        private InOrderSpliterator(Node[] stack, boolean[] withRight, int expectedModCount) {
+            this.expectedModCount = expectedModCount;
+            this.stack = stack;
+            this.withRight = withRight;
+            top = stack.length;
+            for (int i = 0; i < top; i++) remaining += 1 + (withRight[i] ? nodeSize(stack[i].right) : 0);
+        }
+
+        //Push the left spine of a subtree, each node with its right subtree
+        private void pushLeft(Node node) {
+            for (; node != null; node = node.left) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                    withRight = Arrays.copyOf(withRight, top * 2);
                 }
-                return node.element;
+                stack[top] = node;
+                withRight[top++] = true;
             }
-        };
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) throw new NullPointerException();
+            if (top == 0) return false;
+            Node node = stack[--top];
+            stack[top] = null;
+            if (withRight[top]) pushLeft(node.right);
+            remaining--;
+            action.accept(node.element);
+            if (expectedModCount != modCount) throw new ConcurrentModificationException();
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            //the entry visited last that still has a right subtree
+            int split = 0;
+            while (split < top && (!withRight[split] || stack[split].right == null)) split++;
+            if (split == top) return null;
+            Node node = stack[split];
+            boolean[] prefixWithRight = Arrays.copyOfRange(withRight, split, top);
+            prefixWithRight[0] = false;
+            InOrderSpliterator prefix = new InOrderSpliterator(Arrays.copyOfRange(stack, split, top),
+                    prefixWithRight, expectedModCount);
+            Arrays.fill(stack, split, top, null);
+            top = split;
+            pushLeft(node.right);
+            remaining -= prefix.remaining;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL
+                    | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        //null: the elements are in their natural order
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,356 @@
+import java.util.function.LongSupplier;
+
+public class BoundedCache<K, V> {
+    /**
+     * Implementation of a bounded cache
+     * using a HashTableSeparateChaining to find entries and
+     * DoublyLinkedLists to keep them in recency order.
+     *
+     * The map stores, for every key, the list nodes of its entry, so a hit
+     * moves the entry to the front of its list in O(1).
+     *
+     * In LRU mode a single list is evicted from its tail. In W-TinyLFU mode new
+     * entries go through a small LRU window (1% of the capacity) before they reach
+     * a segmented LRU main area (probation and protected). An entry leaving the window
+     * is only admitted into the main area if a frequency sketch says it is used more
+     * often than the main area's eviction victim, so one large scan cannot flush the hot set.
+     */
+    public enum RemovalCause {
+        //removed by remove() or clear()
+        EXPLICIT,
+        //value replaced by put()
+        REPLACED,
+        //evicted to stay within the maximum weight
+        SIZE,
+        //older than the expire after write duration
+        EXPIRED
+    }
+
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    public interface RemovalListener<K, V> {
+        void onRemoval(K key, V value, RemovalCause cause);
+    }
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private static class CacheEntry<K, V> {
+        final K key; V val;
+        int weight; long writeTime;
+        int queue;
+        DoublyLinkedList.Node<CacheEntry<K, V>> accessNode, writeNode;
+
+        CacheEntry(K key, V val, int weight, long writeTime) {
+            this.key = key;
+            this.val = val;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    private final HashTableSeparateChaining<K, CacheEntry<K, V>> map = new HashTableSeparateChaining<>();
+
+    //recency order, most recently used first; LRU mode only uses the window
+    private final DoublyLinkedList<CacheEntry<K, V>> window = new DoublyLinkedList<>();
+    private final DoublyLinkedList<CacheEntry<K, V>> probation = new DoublyLinkedList<>();
+    private final DoublyLinkedList<CacheEntry<K, V>> protectedQueue = new DoublyLinkedList<>();
+    //write order, most recently written first, only kept when entries expire
+    private final DoublyLinkedList<CacheEntry<K, V>> writeOrder = new DoublyLinkedList<>();
+
+    private final long maximumWeight, windowMaximum, mainMaximum, protectedMaximum;
+    private long windowWeight = 0, probationWeight = 0, protectedWeight = 0;
+
+    private final Weigher<K, V> weigher;
+    private final RemovalListener<K, V> listener;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier ticker;
+    private final FrequencySketch sketch;
+
+    private long hitCount = 0, missCount = 0, evictionCount = 0;
+
+    public BoundedCache(long maximumSize) {
+        this(maximumSize, null, 0, false, null, System::nanoTime);
+    }
+
+    public BoundedCache(long maximumSize, boolean tinyLfu) {
+        this(maximumSize, null, 0, tinyLfu, null, System::nanoTime);
+    }
+
+    /*
+    weigher may be null to count entries, expireAfterWriteNanos <= 0 disables expiration,
+    listener may be null, ticker is the time source for expiration in nanoseconds.
+     */
+    public BoundedCache(long maximumWeight, Weigher<K, V> weigher, long expireAfterWriteNanos,
+                        boolean tinyLfu, RemovalListener<K, V> listener, LongSupplier ticker) {
+        if (maximumWeight < 0)
+            throw new IllegalArgumentException("Illegal maximumWeight");
+        if (ticker == null)
+            throw new IllegalArgumentException("Null ticker");
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.listener = listener;
+        this.ticker = ticker;
+        if (tinyLfu) {
+            windowMaximum = Math.max(1, maximumWeight / 100);
+            mainMaximum = Math.max(0, maximumWeight - windowMaximum);
+            protectedMaximum = mainMaximum * 4 / 5;
+            sketch = new FrequencySketch(maximumWeight);
+        }
+        else {
+            windowMaximum = maximumWeight;
+            mainMaximum = protectedMaximum = 0;
+            sketch = null;
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    //total weight of the entries, the entry count when there is no weigher
+    public long weightedSize() {
+        return windowWeight + probationWeight + protectedWeight;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    //check for a live mapping without touching recency or the statistics
+    public boolean containsKey(K key) {
+        CacheEntry<K, V> entry = map.get(key);
+        return entry != null && !isExpired(entry, ticker.getAsLong());
+    }
+
+    public V get(K key) {
+        if (key == null) return null;
+        long now = ticker.getAsLong();
+        expireEntries(now);
+        if (sketch != null) sketch.increment(key.hashCode());
+        CacheEntry<K, V> entry = map.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        onAccess(entry);
+        return entry.val;
+    }
+
+    public V put(K key, V val) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        if (val == null) throw new IllegalArgumentException("Null value");
+        long now = ticker.getAsLong();
+        expireEntries(now);
+        if (sketch != null) sketch.increment(key.hashCode());
+        int weight = weigher == null ? 1 : weigher.weigh(key, val);
+        if (weight < 0) throw new IllegalArgumentException("Negative weight");
+
+        CacheEntry<K, V> entry = map.get(key);
+        V oldVal = null;
+        if (entry != null) {
+            oldVal = entry.val;
+            addWeight(entry.queue, weight - entry.weight);
+            entry.val = val;
+            entry.weight = weight;
+            entry.writeTime = now;
+            if (entry.writeNode != null) writeOrder.moveToFirst(entry.writeNode);
+            onAccess(entry);
+            notifyRemoval(key, oldVal, RemovalCause.REPLACED);
+        }
+        else {
+            entry = new CacheEntry<>(key, val, weight, now);
+            map.put(key, entry);
+            entry.queue = WINDOW;
+            entry.accessNode = window.addFirstNode(entry);
+            windowWeight += weight;
+            if (expireAfterWriteNanos > 0) entry.writeNode = writeOrder.addFirstNode(entry);
+        }
+        evictEntries();
+        return oldVal;
+    }
+
+    public V remove(K key) {
+        if (key == null) return null;
+        CacheEntry<K, V> entry = map.get(key);
+        if (entry == null) return null;
+        removeEntry(entry, RemovalCause.EXPLICIT);
+        return entry.val;
+    }
+
+    public void clear() {
+        while (!window.isEmpty()) removeEntry(window.peekLast(), RemovalCause.EXPLICIT);
+        while (!probation.isEmpty()) removeEntry(probation.peekLast(), RemovalCause.EXPLICIT);
+        while (!protectedQueue.isEmpty()) removeEntry(protectedQueue.peekLast(), RemovalCause.EXPLICIT);
+    }
+
+    //remove the expired entries right away instead of waiting for the next get or put
+    public void cleanUp() {
+        expireEntries(ticker.getAsLong());
+    }
+
+    private boolean isExpired(CacheEntry<K, V> entry, long now) {
+        return expireAfterWriteNanos > 0 && now - entry.writeTime >= expireAfterWriteNanos;
+    }
+
+    //the oldest writes sit at the tail of the write order, so stop at the first live one
+    private void expireEntries(long now) {
+        if (expireAfterWriteNanos <= 0) return;
+        while (!writeOrder.isEmpty() && isExpired(writeOrder.peekLast(), now))
+            removeEntry(writeOrder.peekLast(), RemovalCause.EXPIRED);
+    }
+
+    private DoublyLinkedList<CacheEntry<K, V>> queueOf(int queue) {
+        if (queue == WINDOW) return window;
+        return queue == PROBATION ? probation : protectedQueue;
+    }
+
+    private void addWeight(int queue, long delta) {
+        if (queue == WINDOW) windowWeight += delta;
+        else if (queue == PROBATION) probationWeight += delta;
+        else protectedWeight += delta;
+    }
+
+    //move an entry to its new queue, at the most recently used end
+    private void moveTo(CacheEntry<K, V> entry, int queue) {
+        queueOf(entry.queue).removeNode(entry.accessNode);
+        addWeight(entry.queue, -entry.weight);
+        entry.queue = queue;
+        entry.accessNode = queueOf(queue).addFirstNode(entry);
+        addWeight(queue, entry.weight);
+    }
+
+    private void onAccess(CacheEntry<K, V> entry) {
+        if (entry.queue == PROBATION) {
+            //a second hit promotes a probation entry, the protected area overflows back into probation
+            moveTo(entry, PROTECTED);
+            while (protectedWeight > protectedMaximum && protectedQueue.size() > 1)
+                moveTo(protectedQueue.peekLast(), PROBATION);
+        }
+        else queueOf(entry.queue).moveToFirst(entry.accessNode);
+    }
+
+    private void evictEntries() {
+        if (sketch != null) {
+            while (windowWeight > windowMaximum && !window.isEmpty())
+                admit(window.peekLast());
+        }
+        //whatever is still over the limit goes, least recently used first
+        while (weightedSize() > maximumWeight) {
+            if (!probation.isEmpty()) removeEntry(probation.peekLast(), RemovalCause.SIZE);
+            else if (!window.isEmpty()) removeEntry(window.peekLast(), RemovalCause.SIZE);
+            else removeEntry(protectedQueue.peekLast(), RemovalCause.SIZE);
+        }
+    }
+
+    /*
+    TinyLFU admission of an entry leaving the window: main area victims are evicted
+    for it as long as it is used more often than each of them, otherwise it is evicted itself.
+     */
+    private void admit(CacheEntry<K, V> candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+        while (probationWeight + protectedWeight + candidate.weight > mainMaximum) {
+            CacheEntry<K, V> victim = !probation.isEmpty() ? probation.peekLast()
+                    : protectedQueue.isEmpty() ? null : protectedQueue.peekLast();
+            if (victim == null || candidateFrequency <= sketch.frequency(victim.key.hashCode())) {
+                removeEntry(candidate, RemovalCause.SIZE);
+                return;
+            }
+            removeEntry(victim, RemovalCause.SIZE);
+        }
+        moveTo(candidate, PROBATION);
+    }
+
+    private void removeEntry(CacheEntry<K, V> entry, RemovalCause cause) {
+        map.remove(entry.key);
+        queueOf(entry.queue).removeNode(entry.accessNode);
+        addWeight(entry.queue, -entry.weight);
+        if (entry.writeNode != null) writeOrder.removeNode(entry.writeNode);
+        entry.accessNode = entry.writeNode = null;
+        if (cause == RemovalCause.SIZE) evictionCount++;
+        notifyRemoval(entry.key, entry.val, cause);
+    }
+
+    private void notifyRemoval(K key, V val, RemovalCause cause) {
+        if (listener != null) listener.onRemoval(key, val, cause);
+    }
+
+    /*
+    Count-min sketch with four 4-bit counters per key, packed sixteen to a long.
+    All counters are halved after a sample of updates, so that old popularity fades.
+     */
+    private static class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask, sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(long maximumSize) {
+            int length = HashTableOpenAddressing.tableSizeFor((int) Math.min(Math.max(maximumSize, 16), 1 << 20));
+            table = new long[length];
+            tableMask = length - 1;
+            sampleSize = (int) Math.min(10L * Math.max(maximumSize, 16), Integer.MAX_VALUE);
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & tableMask;
+        }
+
+        //each of the four counters lives in its own nibble of the sixteen in a long
+        private int offsetOf(int hash, int i) {
+            return (((hash >>> (i << 3)) & 3) << 2) + (i << 4) & 63;
+        }
+
+        int frequency(int hash) {
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                int count = (int) ((table[indexOf(hash, i)] >>> offsetOf(hash, i)) & 0xF);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i), offset = offsetOf(hash, i);
+                if (((table[index] >>> offset) & 0xF) != 0xF) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) reset();
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++)
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            additions >>>= 1;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ConcurrentBinarySearchTree<T extends Comparable<T>> implements Iterable<T> {
+    /**
+     * Implementation of a concurrent ordered set as a persistent AVL tree.
+     *
+     * Nodes are immutable. add and remove never change a node: they copy the
+     * O(log(n)) nodes on the path to their element, rebalancing the copies, and
+     * install the new root with a compare-and-set. A writer that loses the race
+     * to another one simply redoes its copy against the newer root. Readers only
+     * load the root once, so contains, find, rank and the navigation methods never
+     * lock or retry, and they always see one consistent version of the tree.
+     *
+     * For the same reason an iterator is a snapshot: it walks the root it started
+     * from while writers keep going, and never throws
+     * ConcurrentModificationException. snapshot() returns an independent tree that
+     * shares every node with this one, in O(1).
+     *
+     * This suits read mostly workloads; each write allocates O(log(n)) nodes and
+     * many concurrent writers can waste work on retries.
+     */
+    private static final class Node<T> {
+        final T element;
+        final Node<T> left, right;
+        final int height, size;
+
+        Node(T element, Node<T> left, Node<T> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+    }
+
+    private final AtomicReference<Node<T>> root;
+
+    public ConcurrentBinarySearchTree() {
+        this((Node<T>) null);
+    }
+
+    private ConcurrentBinarySearchTree(Node<T> root) {
+        this.root = new AtomicReference<>(root);
+    }
+
+    public int size() {
+        return size(root.get());
+    }
+
+    public boolean isEmpty() {
+        return root.get() == null;
+    }
+
+    public int height() {
+        return height(root.get());
+    }
+
+    public void clear() {
+        root.set(null);
+    }
+
+    //An independent copy of the current version, sharing its nodes
+    public ConcurrentBinarySearchTree<T> snapshot() {
+        return new ConcurrentBinarySearchTree<>(root.get());
+    }
+
+    public boolean add(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        while (true) {
+            Node<T> current = root.get();
+            Node<T> updated = add(current, element);
+            if (updated == current) return false;
+            if (root.compareAndSet(current, updated)) return true;
+        }
+    }
+
+    public boolean remove(T element) {
+        if (element == null) return false;
+        while (true) {
+            Node<T> current = root.get();
+            Node<T> updated = remove(current, element);
+            if (updated == current) return false;
+            if (root.compareAndSet(current, updated)) return true;
+        }
+    }
+
+    public boolean contains(T element) {
+        return find(element) != null;
+    }
+
+    //Find the element of the tree that compares equal to the given one
+    public T find(T element) {
+        Node<T> node = root.get();
+        while (node != null) {
+            int cmp = element.compareTo(node.element);
+            if (cmp < 0) node = node.left;
+            else if (cmp > 0) node = node.right;
+            else return node.element;
+        }
+        return null;
+    }
+
+    //Number of elements smaller than the given one
+    public int rank(T element) {
+        int count = 0;
+        Node<T> node = root.get();
+        while (node != null) {
+            int cmp = element.compareTo(node.element);
+            if (cmp <= 0) {
+                if (cmp == 0) return count + size(node.left);
+                node = node.left;
+            } else {
+                count += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    //The smallest element greater than or equal to the given one, or null
+    public T ceiling(T element) {
+        T best = null;
+        Node<T> node = root.get();
+        while (node != null) {
+            int cmp = element.compareTo(node.element);
+            if (cmp == 0) return node.element;
+            if (cmp < 0) {
+                best = node.element;
+                node = node.left;
+            }
+            else node = node.right;
+        }
+        return best;
+    }
+
+    //The largest element smaller than or equal to the given one, or null
+    public T floor(T element) {
+        T best = null;
+        Node<T> node = root.get();
+        while (node != null) {
+            int cmp = element.compareTo(node.element);
+            if (cmp == 0) return node.element;
+            if (cmp > 0) {
+                best = node.element;
+                node = node.right;
+            }
+            else node = node.left;
+        }
+        return best;
+    }
+
+    //Iterate in order over the version of the tree at the time of the call
+    @Override
+    public Iterator<T> iterator() {
+        return new SnapshotIterator<>(root.get(), null, null);
+    }
+
+    //Iterate in order over the elements between lo and hi, both included, of the current version
+    public Iterator<T> rangeIterator(T lo, T hi) {
+        if (lo == null || hi == null) throw new IllegalArgumentException();
+        return new SnapshotIterator<>(root.get(), lo, hi);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        Node<T> snapshot = root.get();
+        return Spliterators.spliterator(new SnapshotIterator<>(snapshot, null, null), size(snapshot),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL
+                        | Spliterator.IMMUTABLE);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    //Copy of the subtree with element added, or the same node if it is already there.
+    //Recursion follows the path, which the AVL invariant keeps O(log(n)) long
+    private static <T extends Comparable<T>> Node<T> add(Node<T> node, T element) {
+        if (node == null) return new Node<>(element, null, null);
+        int cmp = element.compareTo(node.element);
+        if (cmp < 0) {
+            Node<T> left = add(node.left, element);
+            return left == node.left ? node : balance(node.element, left, node.right);
+        }
+        if (cmp > 0) {
+            Node<T> right = add(node.right, element);
+            return right == node.right ? node : balance(node.element, node.left, right);
+        }
+        return node;
+    }
+
+    //Copy of the subtree without element, or the same node if it is not there
+    private static <T extends Comparable<T>> Node<T> remove(Node<T> node, T element) {
+        if (node == null) return null;
+        int cmp = element.compareTo(node.element);
+        if (cmp < 0) {
+            Node<T> left = remove(node.left, element);
+            return left == node.left ? node : balance(node.element, left, node.right);
+        }
+        if (cmp > 0) {
+            Node<T> right = remove(node.right, element);
+            return right == node.right ? node : balance(node.element, node.left, right);
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        //the node takes the element of the smallest node in its right subtree
+        Node<T> smallest = node.right;
+        while (smallest.left != null) smallest = smallest.left;
+        return balance(smallest.element, node.left, removeSmallest(node.right));
+    }
+
+    private static <T> Node<T> removeSmallest(Node<T> node) {
+        if (node.left == null) return node.right;
+        return balance(node.element, removeSmallest(node.left), node.right);
+    }
+
+    //A new node over left and right, rotated back into AVL shape if their heights
+    //differ by two, as they can after a single add or remove below it
+    private static <T> Node<T> balance(T element, Node<T> left, Node<T> right) {
+        int balance = height(left) - height(right);
+        if (balance > 1) {
+            if (height(left.left) >= height(left.right))
+                return new Node<>(left.element, left.left, new Node<>(element, left.right, right));
+            //left-right case
+            return new Node<>(left.right.element, new Node<>(left.element, left.left, left.right.left),
+                    new Node<>(element, left.right.right, right));
+        }
+        if (balance < -1) {
+            if (height(right.right) >= height(right.left))
+                return new Node<>(right.element, new Node<>(element, left, right.left), right.right);
+            //right-left case
+            return new Node<>(right.left.element, new Node<>(element, left, right.left.left),
+                    new Node<>(right.element, right.left.right, right.right));
+        }
+        return new Node<>(element, left, right);
+    }
+
+    //In-order iterator over one version of the tree, between optional bounds
+    private static final class SnapshotIterator<T extends Comparable<T>> implements Iterator<T> {
+        final T hi;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node<T>[] stack = (Node<T>[]) new Node[16];
+        int top = 0;
+
+        SnapshotIterator(Node<T> node, T lo, T hi) {
+            this.hi = hi;
+            while (node != null) {
+                if (lo == null || lo.compareTo(node.element) <= 0) {
+                    push(node);
+                    node = node.left;
+                }
+                else node = node.right;
+            }
+        }
+
+        private void push(Node<T> node) {
+            if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+            stack[top++] = node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0 && (hi == null || stack[top - 1].element.compareTo(hi) <= 0);
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node<T> node = stack[--top];
+            stack[top] = null;
+            for (Node<T> next = node.right; next != null; next = next.left) push(next);
+            return node.element;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentHashTableSeparateChaining<K, V> {
+    /**
+     * Implementation of a thread safe HashTable
+     * using separate chaining with striped bucket locks.
+     *
+     * Readers never lock: chains are made of nodes whose key and next pointer
+     * never change, so get() always sees a consistent chain.
+     * Writers lock only the stripe that owns the bucket. The table length is always
+     * a multiple of the stripe count, so a key keeps its stripe across resizes.
+     *
+     * Resizing is done stripe by stripe: every migrated bucket is replaced by a
+     * forwarding node, and writers that notice a resize in progress help migrate
+     * the remaining stripes. Readers keep going during the whole resize.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    //hash value marking a forwarding node, real hashes are never negative
+    private static final int MOVED = -1;
+
+    private static class Node<K, V> {
+        final int hash; final K key; volatile V val;
+        final Node<K, V> next;
+
+        Node(int hash, K key, V val, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.val = val;
+            this.next = next;
+        }
+
+        @Override public String toString(){
+            return key + "=> " + val;
+        }
+    }
+
+    //left in an old bucket once it has been migrated to the next table
+    private static class ForwardingNode<K, V> extends Node<K, V> {
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    //state shared by every thread that takes part in one resize
+    private static class Transfer<K, V> {
+        final AtomicReferenceArray<Node<K, V>> oldTable, newTable;
+        final AtomicInteger nextStripe = new AtomicInteger();
+        final AtomicInteger doneStripes = new AtomicInteger();
+
+        Transfer(AtomicReferenceArray<Node<K, V>> oldTable, AtomicReferenceArray<Node<K, V>> newTable) {
+            this.oldTable = oldTable;
+            this.newTable = newTable;
+        }
+    }
+
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    private final AtomicReference<Transfer<K, V>> transfer = new AtomicReference<>();
+
+    private final ReentrantLock[] locks;
+    //number of entries per stripe, only written while holding the stripe lock
+    private final AtomicIntegerArray stripeSizes;
+    private final int stripeMask;
+
+    private final double maxLoadFactor;
+    private volatile int stripeThreshold;
+
+    public ConcurrentHashTableSeparateChaining() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, defaultStripes());
+    }
+
+    public ConcurrentHashTableSeparateChaining(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR, defaultStripes());
+    }
+
+    public ConcurrentHashTableSeparateChaining(int capacity, double maxLoadFactor) {
+        this(capacity, maxLoadFactor, defaultStripes());
+    }
+
+    public ConcurrentHashTableSeparateChaining(int capacity, double maxLoadFactor, int stripes) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Illegal capacity");
+        if (maxLoadFactor <= 0 || Double.isNaN(maxLoadFactor) || Double.isInfinite(maxLoadFactor))
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        if (stripes <= 0)
+            throw new IllegalArgumentException("Illegal stripes");
+        int stripeCount = powerOfTwo(stripes);
+        this.stripeMask = stripeCount - 1;
+        this.maxLoadFactor = maxLoadFactor;
+        this.locks = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+            locks[i] = new ReentrantLock();
+        this.stripeSizes = new AtomicIntegerArray(stripeCount);
+
+        int tableCapacity = powerOfTwo(Math.max(Math.max(DEFAULT_CAPACITY, capacity), stripeCount));
+        table = new AtomicReferenceArray<>(tableCapacity);
+        stripeThreshold = thresholdFor(tableCapacity);
+    }
+
+    private static int defaultStripes() {
+        return Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private static int powerOfTwo(int n) {
+        int cap = 1;
+        while (cap < n && cap < (1 << 30)) cap <<= 1;
+        return cap;
+    }
+
+    private int thresholdFor(int tableCapacity) {
+        return Math.max(1, (int) (tableCapacity * maxLoadFactor) / (stripeMask + 1));
+    }
+
+    //spread the hash value and keep it non negative
+    private static int spread(int keyHash) {
+        return (keyHash ^ (keyHash >>> 16)) & 0x7FFFFFFF;
+    }
+
+    public int size() {
+        long size = 0;
+        for (int i = 0; i <= stripeMask; i++)
+            size += stripeSizes.get(i);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i <= stripeMask; i++)
+            if (stripeSizes.get(i) != 0) return false;
+        return true;
+    }
+
+    public void clear() {
+        while (true) {
+            helpTransfer();
+            lockAll();
+            try {
+                if (transfer.get() != null) continue;
+                AtomicReferenceArray<Node<K, V>> tab = table;
+                for (int i = 0; i < tab.length(); i++)
+                    tab.set(i, null);
+                for (int i = 0; i <= stripeMask; i++)
+                    stripeSizes.set(i, 0);
+                return;
+            } finally {
+                unlockAll();
+            }
+        }
+    }
+
+    public boolean containsKey(K key) {
+        return hashKey(key);
+    }
+
+    public boolean hashKey(K key) {
+        if (key == null) return false;
+        return seekNode(key) != null;
+    }
+
+    public V get(K key) {
+        if (key == null) return null;
+        Node<K, V> node = seekNode(key);
+        return node != null ? node.val : null;
+    }
+
+    //lock free lookup, follows forwarding nodes into the next table
+    private Node<K, V> seekNode(K key) {
+        int hash = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        Node<K, V> node = tab.get(hash & (tab.length() - 1));
+        while (node instanceof ForwardingNode) {
+            tab = ((ForwardingNode<K, V>) node).nextTable;
+            node = tab.get(hash & (tab.length() - 1));
+        }
+        for (; node != null; node = node.next)
+            if (node.hash == hash && (node.key == key || node.key.equals(key)))
+                return node;
+        return null;
+    }
+
+    public V put(K key, V val) {
+        return insert(key, val);
+    }
+    public V add(K key, V val) {
+        return insert(key, val);
+    }
+    public V insert(K key, V val) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        int hash = spread(key.hashCode());
+        int stripe = hash & stripeMask;
+        boolean grow;
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> tab = lockedTable(hash);
+            int bucketIndex = hash & (tab.length() - 1);
+            Node<K, V> head = tab.get(bucketIndex);
+            for (Node<K, V> node = head; node != null; node = node.next) {
+                if (node.hash == hash && (node.key == key || node.key.equals(key))) {
+                    V oldVal = node.val;
+                    node.val = val;
+                    return oldVal;
+                }
+            }
+            tab.set(bucketIndex, new Node<>(hash, key, val, head));
+            int stripeSize = stripeSizes.get(stripe) + 1;
+            stripeSizes.lazySet(stripe, stripeSize);
+            grow = stripeSize > stripeThreshold;
+        } finally {
+            lock.unlock();
+        }
+        if (grow) resizeTable();
+        else if (transfer.get() != null) helpTransfer();
+        return null;
+    }
+
+    public V remove(K key) {
+        if (key == null) return null;
+        int hash = spread(key.hashCode());
+        int stripe = hash & stripeMask;
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> tab = lockedTable(hash);
+            int bucketIndex = hash & (tab.length() - 1);
+            Node<K, V> head = tab.get(bucketIndex);
+            Node<K, V> node = head;
+            while (node != null && !(node.hash == hash && (node.key == key || node.key.equals(key))))
+                node = node.next;
+            if (node == null) return null;
+
+            //copy the nodes in front of the removed one so that readers never see a broken chain
+            Node<K, V> newHead = node.next;
+            for (Node<K, V> p = head; p != node; p = p.next)
+                newHead = new Node<>(p.hash, p.key, p.val, newHead);
+            tab.set(bucketIndex, newHead);
+            stripeSizes.lazySet(stripe, stripeSizes.get(stripe) - 1);
+            return node.val;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //the table holding the bucket for this hash, the caller must hold the stripe lock
+    private AtomicReferenceArray<Node<K, V>> lockedTable(int hash) {
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        Node<K, V> node = tab.get(hash & (tab.length() - 1));
+        while (node instanceof ForwardingNode) {
+            tab = ((ForwardingNode<K, V>) node).nextTable;
+            node = tab.get(hash & (tab.length() - 1));
+        }
+        return tab;
+    }
+
+    //start a resize to twice the capacity unless one is already running, then help it along
+    private void resizeTable() {
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        if (transfer.get() == null && tab.length() < (1 << 30)) {
+            Transfer<K, V> t = new Transfer<>(tab, new AtomicReferenceArray<Node<K, V>>(tab.length() * 2));
+            transfer.compareAndSet(null, t);
+        }
+        helpTransfer();
+    }
+
+    //migrate stripes of the running resize until none are left to claim
+    private void helpTransfer() {
+        Transfer<K, V> t;
+        while ((t = transfer.get()) != null) {
+            //a resize set up against a table that has since been replaced is dropped
+            if (t.oldTable != table) {
+                transfer.compareAndSet(t, null);
+                continue;
+            }
+            int stripe = t.nextStripe.getAndIncrement();
+            if (stripe > stripeMask) return;
+            transferStripe(t, stripe);
+            if (t.doneStripes.incrementAndGet() == stripeMask + 1) {
+                table = t.newTable;
+                stripeThreshold = thresholdFor(t.newTable.length());
+                transfer.set(null);
+            }
+        }
+    }
+
+    //split every bucket of a stripe into its low and high halves in the next table
+    private void transferStripe(Transfer<K, V> t, int stripe) {
+        int oldCapacity = t.oldTable.length();
+        ForwardingNode<K, V> forward = new ForwardingNode<>(t.newTable);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            for (int i = stripe; i < oldCapacity; i += stripeMask + 1) {
+                Node<K, V> low = null, high = null;
+                for (Node<K, V> node = t.oldTable.get(i); node != null; node = node.next) {
+                    if ((node.hash & oldCapacity) == 0)
+                        low = new Node<>(node.hash, node.key, node.val, low);
+                    else
+                        high = new Node<>(node.hash, node.key, node.val, high);
+                }
+                t.newTable.set(i, low);
+                t.newTable.set(i + oldCapacity, high);
+                t.oldTable.set(i, forward);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks)
+            lock.lock();
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--)
+            locks[i].unlock();
+    }
+
+    //a weakly consistent view, entries changed during the scan may or may not be seen
+    public List<K> keys(){
+        List<K> keys = new ArrayList<>(size());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (int i = 0; i < tab.length(); i++)
+            for (Node<K, V> node = bucketHead(tab, i); node != null; node = node.next)
+                keys.add(node.key);
+        return keys;
+    }
+    public List<V> values(){
+        List<V> values = new ArrayList<>(size());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (int i = 0; i < tab.length(); i++)
+            for (Node<K, V> node = bucketHead(tab, i); node != null; node = node.next)
+                values.add(node.val);
+        return values;
+    }
+
+    /*
+    Head of a bucket for a scan over the table. A forwarded bucket has been split
+    into two buckets of the next table, both of which belong to this scan position.
+     */
+    private Node<K, V> bucketHead(AtomicReferenceArray<Node<K, V>> tab, int i) {
+        Node<K, V> node = tab.get(i);
+        if (!(node instanceof ForwardingNode)) return node;
+        AtomicReferenceArray<Node<K, V>> next = ((ForwardingNode<K, V>) node).nextTable;
+        Node<K, V> merged = null;
+        for (int j = i; j < next.length(); j += tab.length())
+            for (Node<K, V> e = bucketHead(next, j); e != null; e = e.next)
+                merged = new Node<>(e.hash, e.key, e.val, merged);
+        return merged;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (int i = 0; i < tab.length(); i++)
+            for (Node<K, V> node = bucketHead(tab, i); node != null; node = node.next)
+                sb.append(node+", ");
+        sb.append("}");
+        return sb.toString();
+    }
+}
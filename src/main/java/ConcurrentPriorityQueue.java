@@ -0,0 +1,189 @@
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentPriorityQueue<T> {
+    /**
+     * Implementation of a relaxed concurrent min priority queue (a MultiQueue).
+     *
+     * Elements are spread over several DaryPriorityQueue heaps, each behind its own
+     * lock. add puts an element in a random heap whose lock is free; poll looks at
+     * the minimum of two random heaps and takes the smaller one. Threads therefore
+     * rarely meet on the same lock, at the price of order: poll returns an element
+     * close to, not always equal to, the global minimum. The expected rank error
+     * grows with the number of heaps, which is the knob between scalability and
+     * order; a single heap gives a strict, fully locked priority queue.
+     *
+     * poll returns null only when every heap is empty. take waits for an element,
+     * up to a timeout.
+     */
+    private static final class SubQueue<T> {
+        final ReentrantLock lock = new ReentrantLock();
+        final DaryPriorityQueue<T> heap;
+        //minimum of the heap, readable without the lock
+        volatile T top;
+
+        SubQueue(Comparator<? super T> comparator) {
+            heap = new DaryPriorityQueue<>(4, comparator);
+        }
+    }
+
+    private final SubQueue<T>[] queues;
+    private final Comparator<? super T> comparator;
+    private final AtomicInteger size = new AtomicInteger();
+
+    //consumers blocked in take
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    public ConcurrentPriorityQueue() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public ConcurrentPriorityQueue(int queueCount) {
+        this(queueCount, null);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentPriorityQueue(int queueCount, Comparator<? super T> comparator) {
+        if (queueCount <= 0) throw new IllegalArgumentException("Illegal queueCount " + queueCount);
+        this.comparator = comparator;
+        queues = new SubQueue[queueCount];
+        for (int i = 0; i < queueCount; i++) queues[i] = new SubQueue<>(comparator);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public void add(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            SubQueue<T> queue = queues[random.nextInt(queues.length)];
+            //a busy heap is skipped rather than waited for
+            if (!queue.lock.tryLock()) continue;
+            try {
+                queue.heap.add(element);
+                queue.top = queue.heap.peek();
+                //counted before the lock is released, so no poll can take the element first and size go negative
+                size.incrementAndGet();
+            } finally {
+                queue.lock.unlock();
+            }
+            break;
+        }
+        if (waiters.get() > 0) signalWaiter();
+    }
+
+    //an element near the minimum, null when the queue is empty
+    public T poll() {
+        if (queues.length == 1) return pollFrom(queues[0], true);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < queues.length && size.get() > 0; attempt++) {
+            SubQueue<T> a = queues[random.nextInt(queues.length)];
+            SubQueue<T> b = queues[random.nextInt(queues.length)];
+            T topA = a.top, topB = b.top;
+            if (topA == null && topB == null) continue;
+            SubQueue<T> smaller = topB == null || (topA != null && compare(topA, topB) <= 0) ? a : b;
+            T element = pollFrom(smaller, false);
+            if (element != null) return element;
+        }
+        //random picks kept missing, look at every heap before reporting the queue empty
+        int start = random.nextInt(queues.length);
+        for (int i = 0; i < queues.length && size.get() > 0; i++) {
+            T element = pollFrom(queues[(start + i) % queues.length], true);
+            if (element != null) return element;
+        }
+        return null;
+    }
+
+    //the smallest of the heap minimums, which may be stale by the time it is returned
+    public T peek() {
+        T min = null;
+        for (SubQueue<T> queue : queues) {
+            T top = queue.top;
+            if (top != null && (min == null || compare(top, min) < 0)) min = top;
+        }
+        return min;
+    }
+
+    //wait until an element is available, null when the timeout elapses first
+    public T take(long timeout, TimeUnit unit) throws InterruptedException {
+        T element = poll();
+        if (element != null) return element;
+        long nanos = unit.toNanos(timeout);
+        waitLock.lockInterruptibly();
+        try {
+            waiters.incrementAndGet();
+            try {
+                while ((element = poll()) == null) {
+                    if (nanos <= 0) return null;
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+            //a waiter woken for an element another thread took may have consumed the only signal
+            if (size.get() > 0 && waiters.get() > 0) notEmpty.signal();
+            return element;
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    //wait as long as it takes for an element
+    public T take() throws InterruptedException {
+        return take(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    public void clear() {
+        for (SubQueue<T> queue : queues) {
+            queue.lock.lock();
+            try {
+                size.addAndGet(-queue.heap.size());
+                queue.heap.clear();
+                queue.top = null;
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    private T pollFrom(SubQueue<T> queue, boolean wait) {
+        if (wait) queue.lock.lock();
+        else if (!queue.lock.tryLock()) return null;
+        try {
+            T element = queue.heap.poll();
+            if (element == null) return null;
+            queue.top = queue.heap.peek();
+            size.decrementAndGet();
+            return element;
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    private void signalWaiter() {
+        waitLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator != null) return comparator.compare(a, b);
+        return ((Comparable<? super T>) a).compareTo(b);
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class DaryPriorityQueue<T> {
+    /**
+     * Implementation of a min priority queue using a d-ary heap stored in an Object[].
+     *
+     * The children of node i are d*i+1 .. d*i+d. A larger arity gives a shallower
+     * heap, so fewer levels and cache misses on the way down, at the price of more
+     * comparisons per level; 4 is a good default for large heaps. Sifting moves a
+     * hole instead of swapping and keeps no index map, so remove(element) and
+     * contains are O(n). Use IndexedPriorityQueue to change priorities in place.
+     *
+     * Elements are ordered by the comparator, or by their natural order without one.
+     */
+    private static final int DEFAULT_ARITY = 4;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final int arity;
+    private final Comparator<? super T> comparator;
+    private Object[] heap;
+    private int size = 0;
+
+    public DaryPriorityQueue() {
+        this(DEFAULT_ARITY);
+    }
+
+    public DaryPriorityQueue(int arity) {
+        this(arity, DEFAULT_CAPACITY, null);
+    }
+
+    public DaryPriorityQueue(int arity, Comparator<? super T> comparator) {
+        this(arity, DEFAULT_CAPACITY, comparator);
+    }
+
+    public DaryPriorityQueue(int arity, int capacity, Comparator<? super T> comparator) {
+        if (arity < 2) throw new IllegalArgumentException("Illegal arity " + arity);
+        if (capacity < 0) throw new IllegalArgumentException("Illegal capacity " + capacity);
+        this.arity = arity;
+        this.comparator = comparator;
+        heap = new Object[Math.max(1, capacity)];
+    }
+
+    public int arity() {
+        return arity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+    }
+
+    public T peek() {
+        if (isEmpty()) return null;
+        return elementAt(0);
+    }
+
+    public void add(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        if (size == heap.length) grow();
+        navigateUp(size++, element);
+    }
+
+    public T poll() {
+        if (isEmpty()) return null;
+        T min = elementAt(0);
+        T last = elementAt(--size);
+        heap[size] = null;
+        if (size > 0) navigateDown(0, last);
+        return min;
+    }
+
+    //poll followed by add in a single sift, the usual step of an event loop
+    public T pollAndAdd(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        if (isEmpty()) {
+            add(element);
+            return null;
+        }
+        T min = elementAt(0);
+        navigateDown(0, element);
+        return min;
+    }
+
+    public boolean contains(T element) {
+        return indexOf(element) >= 0;
+    }
+
+    public boolean remove(T element) {
+        int i = indexOf(element);
+        if (i < 0) return false;
+        T last = elementAt(--size);
+        heap[size] = null;
+        if (i < size) {
+            navigateDown(i, last);
+            if (heap[i] == last) navigateUp(i, last);
+        }
+        return true;
+    }
+
+    //Check if the heap is a min heap, suppose i=0
+    public boolean isMinHeap(int i) {
+        for (int child = arity * i + 1; child <= arity * i + arity && child < size; child++)
+            if (compare(elementAt(child), elementAt(i)) < 0 || !isMinHeap(child)) return false;
+        return true;
+    }
+
+    @Override public String toString() {
+        return Arrays.toString(Arrays.copyOf(heap, size));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int i) {
+        return (T) heap[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator != null) return comparator.compare(a, b);
+        return ((Comparable<? super T>) a).compareTo(b);
+    }
+
+    private int indexOf(T element) {
+        if (element == null) return -1;
+        for (int i = 0; i < size; i++)
+            if (element.equals(heap[i])) return i;
+        return -1;
+    }
+
+    private void grow() {
+        int capacity = heap.length < 64 ? heap.length * 2 : heap.length + (heap.length >> 1);
+        if (capacity < 0) capacity = Integer.MAX_VALUE - 8;
+        heap = Arrays.copyOf(heap, capacity);
+    }
+
+    //Move the hole at i up until element fits in it
+    private void navigateUp(int i, T element) {
+        while (i > 0) {
+            int parent = (i - 1) / arity;
+            T parentElement = elementAt(parent);
+            if (compare(element, parentElement) >= 0) break;
+            heap[i] = parentElement;
+            i = parent;
+        }
+        heap[i] = element;
+    }
+
+    //Move the hole at i down, following the smallest child, until element fits in it
+    private void navigateDown(int i, T element) {
+        while (true) {
+            int first = arity * i + 1;
+            if (first >= size || first < 0) break;
+            int last = Math.min(first + arity, size);
+            int smallest = first;
+            T smallestElement = elementAt(first);
+            for (int child = first + 1; child < last; child++) {
+                T childElement = elementAt(child);
+                if (compare(childElement, smallestElement) < 0) {
+                    smallest = child;
+                    smallestElement = childElement;
+                }
+            }
+            if (compare(element, smallestElement) <= 0) break;
+            heap[i] = smallestElement;
+            i = smallest;
+        }
+        heap[i] = element;
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+public class DoubleIntMinHeap {
+    /**
+     * Implementation of a min heap of (double priority, int value) pairs.
+     *
+     * Priorities and values live in two parallel primitive arrays of a 4-ary heap,
+     * so add, peek and poll neither box nor allocate once the arrays are large
+     * enough. Typical use is a Dijkstra or event queue keyed by a double and
+     * carrying an int node id. Equal priorities come out in no particular order.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] priorities;
+    private int[] values;
+    private int size = 0;
+
+    public DoubleIntMinHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DoubleIntMinHeap(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Illegal capacity " + capacity);
+        priorities = new double[Math.max(1, capacity)];
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(double priority, int value) {
+        //NaN is not ordered against anything, it would break the heap
+        if (Double.isNaN(priority)) throw new IllegalArgumentException("NaN priority");
+        if (size == priorities.length) grow();
+        int i = size++;
+        //move the hole up until the new pair fits in it
+        while (i > 0) {
+            int parent = (i - 1) >>> 2;
+            if (priorities[parent] <= priority) break;
+            priorities[i] = priorities[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        values[i] = value;
+    }
+
+    public double peekPriority() {
+        if (isEmpty()) throw new RuntimeException("Heap is empty");
+        return priorities[0];
+    }
+
+    public int peekValue() {
+        if (isEmpty()) throw new RuntimeException("Heap is empty");
+        return values[0];
+    }
+
+    //remove the pair with the lowest priority and return its value, read peekPriority first to keep the priority
+    public int poll() {
+        int value = peekValue();
+        --size;
+        if (size > 0) navigateDown(priorities[size], values[size]);
+        return value;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(priorities[i]).append("=").append(values[i]);
+        }
+        return sb.append("]").toString();
+    }
+
+    //Move the hole at the root down, following the smallest child, until the pair fits in it
+    private void navigateDown(double priority, int value) {
+        int i = 0;
+        while (true) {
+            int first = (i << 2) + 1;
+            if (first >= size || first < 0) break;
+            int last = Math.min(first + 4, size);
+            int smallest = first;
+            for (int child = first + 1; child < last; child++)
+                if (priorities[child] < priorities[smallest]) smallest = child;
+            if (priority <= priorities[smallest]) break;
+            priorities[i] = priorities[smallest];
+            values[i] = values[smallest];
+            i = smallest;
+        }
+        priorities[i] = priority;
+        values[i] = value;
+    }
+
+    private void grow() {
+        int capacity = priorities.length + (priorities.length >> 1) + 1;
+        if (capacity < 0) capacity = Integer.MAX_VALUE - 8;
+        priorities = Arrays.copyOf(priorities, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+}
@@ -6,7 +6,11 @@ public class DoublyLinkedList<K> {
      */
     private int size = 0;
 
-    private class Node <K>
+    /*
+    A node is handed out by the *Node methods so that callers can keep it
+    and later unlink or move it in O(1) without searching the list.
+     */
+    public static class Node <K>
     {
         K element;
         Node <K> prev, next;
@@ -16,6 +20,11 @@ public class DoublyLinkedList<K> {
             this.prev = prev;
             this.next = next;
         }
+
+        public K getElement()
+        {
+            return element;
+        }
     }
     private Node <K> head = null;
     private Node <K> tail = null;
@@ -43,6 +52,12 @@ public class DoublyLinkedList<K> {
 
     //Add element to the tail
     public  void addLast(K element)
+    {
+        addLastNode(element);
+    }
+
+    //Add element to the tail and return the node holding it
+    public Node<K> addLastNode(K element)
     {
         if(isEmpty()) head = tail = new Node<>(element, null, null);
         else{
@@ -50,10 +65,17 @@ public class DoublyLinkedList<K> {
             tail = tail.next;
         }
         size++;
+        return tail;
     }
 
     //Add element to the head
     public void addFirst(K element)
+    {
+        addFirstNode(element);
+    }
+
+    //Add element to the head and return the node holding it
+    public Node<K> addFirstNode(K element)
     {
         if(isEmpty()) head = tail = new Node<>(element, null, null);
         else{
@@ -61,6 +83,53 @@ public class DoublyLinkedList<K> {
             head = head.prev;
         }
         size++;
+        return head;
+    }
+
+    //Get the node at the head, or null when the list is empty
+    public Node<K> firstNode()
+    {
+        return head;
+    }
+
+    //Get the node at the tail, or null when the list is empty
+    public Node<K> lastNode()
+    {
+        return tail;
+    }
+
+    //Unlink a node previously returned by this list
+    public K removeNode(Node<K> node)
+    {
+        return remove(node);
+    }
+
+    //Move a node of this list to the head
+    public void moveToFirst(Node<K> node)
+    {
+        if(node == head) return;
+        //node is not the head, so it has a predecessor
+        node.prev.next = node.next;
+        if(node.next == null) tail = node.prev;
+        else node.next.prev = node.prev;
+        node.prev = null;
+        node.next = head;
+        head.prev = node;
+        head = node;
+    }
+
+    //Move a node of this list to the tail
+    public void moveToLast(Node<K> node)
+    {
+        if(node == tail) return;
+        //node is not the tail, so it has a successor
+        node.next.prev = node.prev;
+        if(node.prev == null) head = node.next;
+        else node.prev.next = node.next;
+        node.next = null;
+        node.prev = tail;
+        tail.next = node;
+        tail = node;
     }
 
     //Get the value of the head
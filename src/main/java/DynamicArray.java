@@ -50,7 +50,7 @@ public class DynamicArray<T>  {
         with twice the capacity, copy the original elements to it
         and then add the new element.
          */
-        if(len+1>=capacity)
+        if(len>=capacity)
         {
             if(capacity == 0) capacity = 1;
             else capacity*=2;
@@ -60,7 +60,7 @@ public class DynamicArray<T>  {
             arr = new_arr;
         }
 
-        arr[len+1] = element;
+        arr[len++] = element;
     }
 
     public boolean remove(Object obj)
@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class ExternalPriorityQueue<T> implements AutoCloseable {
+    /**
+     * Implementation of a min priority queue that can grow beyond the heap.
+     *
+     * At most memoryLimit elements are kept in an in-memory DaryPriorityQueue. When
+     * it is full, its elements are written in order to a run file through the
+     * serializer and the heap starts empty again. poll takes the smaller of the
+     * in-memory minimum and the smallest head of the runs, which are themselves
+     * kept in a DaryPriorityQueue ordered by head: a k-way merge read through one
+     * buffer per run. Once there are more than maxRuns runs the maxRuns shortest
+     * are merged into a single one, so the fan-in and the number of open files
+     * stay bounded while the longest run, which holds most of the elements, is not
+     * rewritten by every merge.
+     *
+     * Run files are created in the given directory and deleted once read or when
+     * the queue is closed.
+     */
+    public interface Serializer<T> {
+        byte[] serialize(T element);
+
+        T deserialize(byte[] bytes);
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int DEFAULT_MAX_RUNS = 64;
+
+    private final Path directory;
+    private final int memoryLimit, bufferSize, maxRuns;
+    private final Serializer<T> serializer;
+    private final Comparator<? super T> comparator;
+
+    private final DaryPriorityQueue<T> memory;
+    //runs with at least one element left, ordered by their head
+    private final DaryPriorityQueue<Run> runs;
+    private long size = 0;
+
+    public ExternalPriorityQueue(Path directory, int memoryLimit, Serializer<T> serializer) {
+        this(directory, memoryLimit, serializer, null);
+    }
+
+    public ExternalPriorityQueue(Path directory, int memoryLimit, Serializer<T> serializer,
+                                 Comparator<? super T> comparator) {
+        this(directory, memoryLimit, serializer, comparator, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RUNS);
+    }
+
+    public ExternalPriorityQueue(Path directory, int memoryLimit, Serializer<T> serializer,
+                                 Comparator<? super T> comparator, int bufferSize, int maxRuns) {
+        if (memoryLimit <= 0) throw new IllegalArgumentException("Illegal memoryLimit " + memoryLimit);
+        if (bufferSize < 16) throw new IllegalArgumentException("Illegal bufferSize " + bufferSize);
+        if (maxRuns < 2) throw new IllegalArgumentException("Illegal maxRuns " + maxRuns);
+        this.directory = directory;
+        this.memoryLimit = memoryLimit;
+        this.serializer = serializer;
+        this.comparator = comparator;
+        this.bufferSize = bufferSize;
+        this.maxRuns = maxRuns;
+        memory = new DaryPriorityQueue<>(4, comparator);
+        runs = new DaryPriorityQueue<>(4, (a, b) -> compare(a.head, b.head));
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //number of run files currently on disk
+    public int runCount() {
+        return runs.size();
+    }
+
+    public void add(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        if (memory.size() >= memoryLimit) spill();
+        memory.add(element);
+        size++;
+    }
+
+    public T peek() {
+        T inMemory = memory.peek();
+        Run run = runs.peek();
+        if (run != null && (inMemory == null || compare(run.head, inMemory) < 0)) return run.head;
+        return inMemory;
+    }
+
+    public T poll() {
+        if (isEmpty()) return null;
+        T inMemory = memory.peek();
+        Run run = runs.peek();
+        size--;
+        if (run != null && (inMemory == null || compare(run.head, inMemory) < 0)) return pollRun(runs);
+        return memory.poll();
+    }
+
+    public void clear() {
+        while (!runs.isEmpty()) runs.poll().delete();
+        memory.clear();
+        size = 0;
+    }
+
+    @Override public void close() {
+        clear();
+    }
+
+    //take the head of the smallest run of the heap and move that run to its new place
+    private T pollRun(DaryPriorityQueue<Run> heap) {
+        Run run = heap.peek();
+        T head = run.head;
+        if (run.advance()) heap.pollAndAdd(run);
+        else heap.poll().delete();
+        return head;
+    }
+
+    //write the in-memory elements in order to a new run
+    private void spill() {
+        Run run = new Run();
+        RunWriter writer = new RunWriter(run.file);
+        while (!memory.isEmpty()) writer.write(memory.poll());
+        writer.close();
+        run.open(writer.count);
+        runs.add(run);
+        if (runs.size() > maxRuns) mergeRuns();
+    }
+
+    //replace the maxRuns shortest runs by a single one holding all their elements
+    private void mergeRuns() {
+        List<Run> all = new ArrayList<>(runs.size());
+        while (!runs.isEmpty()) all.add(runs.poll());
+        all.sort(Comparator.comparingLong(run -> run.remaining));
+        DaryPriorityQueue<Run> shortest = new DaryPriorityQueue<>(4, (a, b) -> compare(a.head, b.head));
+        for (int i = 0; i < all.size(); i++) (i < maxRuns ? shortest : runs).add(all.get(i));
+        Run merged = new Run();
+        RunWriter writer = new RunWriter(merged.file);
+        while (!shortest.isEmpty()) writer.write(pollRun(shortest));
+        writer.close();
+        merged.open(writer.count);
+        runs.add(merged);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator != null) return comparator.compare(a, b);
+        return ((Comparable<? super T>) a).compareTo(b);
+    }
+
+    //a sorted run file, read from the front through a buffer
+    private class Run {
+        final Path file;
+        FileChannel channel;
+        ByteBuffer buffer;
+        long remaining;
+        T head;
+
+        Run() {
+            try {
+                file = Files.createTempFile(directory, "run", ".tmp");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        //start reading the count elements of the file and load the first one
+        void open(long count) {
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (IOException e) {
+                delete();
+                throw new UncheckedIOException(e);
+            }
+            buffer = ByteBuffer.allocate(bufferSize);
+            buffer.flip();
+            remaining = count;
+            advance();
+        }
+
+        //load the next element as head, returns false when the run is exhausted
+        boolean advance() {
+            if (remaining == 0) {
+                head = null;
+                return false;
+            }
+            remaining--;
+            ensure(4);
+            int length = buffer.getInt();
+            ensure(length);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            head = serializer.deserialize(bytes);
+            return true;
+        }
+
+        //make at least n bytes readable in the buffer
+        private void ensure(int n) {
+            if (buffer.remaining() >= n) return;
+            if (n > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(n);
+                larger.put(buffer);
+                buffer = larger;
+            } else buffer.compact();
+            try {
+                while (buffer.position() < n)
+                    if (channel.read(buffer) < 0) throw new IOException("Truncated run file " + file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.flip();
+        }
+
+        void delete() {
+            try {
+                if (channel != null) channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    //appends length prefixed serialized elements to a run file through a buffer
+    private class RunWriter {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        long count = 0;
+
+        RunWriter(Path file) {
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void write(T element) {
+            byte[] bytes = serializer.serialize(element);
+            if (buffer.remaining() < 4 + bytes.length) flush();
+            if (buffer.remaining() < 4 + bytes.length) {
+                //larger than the whole buffer, written directly
+                ByteBuffer record = ByteBuffer.allocate(4 + bytes.length);
+                record.putInt(bytes.length).put(bytes).flip();
+                writeFully(record);
+            } else buffer.putInt(bytes.length).put(bytes);
+            count++;
+        }
+
+        private void flush() {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer data) {
+            try {
+                while (data.hasRemaining()) channel.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HashTableOpenAddressing<K, V> {
+    /**
+     * Implementation of a HashTable
+     * using open addressing with linear probing.
+     *
+     * Keys and values live in two flat arrays, so a put never allocates
+     * an entry object and a lookup touches at most a few adjacent slots.
+     * Removal uses backward-shift deletion, so no tombstones are left behind.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    //largest power of two an array can have, shared with IntIntTable and LongObjectTable
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private Object[] keys;
+    private Object[] vals;
+
+    private double maxLoadFactor;
+    private int capacity, mask, threshold, size = 0;
+
+    public HashTableOpenAddressing() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public HashTableOpenAddressing(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public HashTableOpenAddressing(int capacity, double maxLoadFactor) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Illegal capacity");
+        if (maxLoadFactor <= 0 || maxLoadFactor >= 1 || Double.isNaN(maxLoadFactor))
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        this.maxLoadFactor = maxLoadFactor;
+        //size the table so that `capacity` entries fit without a resize
+        allocate(tableSizeFor((int) Math.ceil(Math.max(capacity, 1) / maxLoadFactor)));
+    }
+
+    //round up to the next power of two so that indexes can be masked
+    static int tableSizeFor(int n) {
+        int cap = 1;
+        while (cap < n && cap < MAXIMUM_CAPACITY) cap <<= 1;
+        return Math.max(cap, 2);
+    }
+
+    //spread the bits of a hash value so that linear probing sees a uniform distribution
+    static int mix(int keyHash) {
+        int h = keyHash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        threshold = (int) (newCapacity * maxLoadFactor);
+        keys = new Object[newCapacity];
+        vals = new Object[newCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(vals, null);
+        size = 0;
+    }
+
+    public boolean containsKey(K key) {
+        return hashKey(key);
+    }
+
+    public boolean hashKey(K key) {
+        if (key == null) return false;
+        return seekSlot(key) >= 0;
+    }
+
+    public V put(K key, V val) {
+        return insert(key, val);
+    }
+    public V add(K key, V val) {
+        return insert(key, val);
+    }
+    @SuppressWarnings("unchecked")
+    public V insert(K key, V val) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        int i = mix(key.hashCode()) & mask;
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k == key || k.equals(key)) {
+                V oldVal = (V) vals[i];
+                vals[i] = val;
+                return oldVal;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size >= threshold && capacity == MAXIMUM_CAPACITY) throw tableFull(capacity);
+        keys[i] = key;
+        vals[i] = val;
+        if (++size > threshold) resizeTable();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        if (key == null) return null;
+        int slot = seekSlot(key);
+        return slot >= 0 ? (V) vals[slot] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        if (key == null) return null;
+        int slot = seekSlot(key);
+        if (slot < 0) return null;
+        V oldVal = (V) vals[slot];
+        deleteSlot(slot);
+        --size;
+        return oldVal;
+    }
+
+    //find the slot holding the key, or -1 once an empty slot ends the probe sequence
+    private int seekSlot(Object key) {
+        int i = mix(key.hashCode()) & mask;
+        Object k;
+        while ((k = keys[i]) != null) {
+            if (k == key || k.equals(key)) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /*
+    Backward-shift deletion: walk the cluster after the freed slot and move back
+    every entry whose home slot does not lie cyclically between the hole and itself.
+     */
+    private void deleteSlot(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            Object k = keys[i];
+            if (k == null) break;
+            int home = mix(k.hashCode()) & mask;
+            //the entry may stay only if its home lies in (hole, i]
+            if (hole <= i ? (hole < home && home <= i) : (hole < home || home <= i)) continue;
+            keys[hole] = k;
+            vals[hole] = vals[i];
+            hole = i;
+        }
+        keys[hole] = null;
+        vals[hole] = null;
+    }
+
+    //thrown instead of growing a table that is already at MAXIMUM_CAPACITY
+    static IllegalStateException tableFull(int capacity) {
+        return new IllegalStateException("Table is full: " + capacity + " slots is the maximum capacity");
+    }
+
+    private void resizeTable() {
+        if (capacity == MAXIMUM_CAPACITY) throw tableFull(capacity);
+        Object[] oldKeys = keys;
+        Object[] oldVals = vals;
+        allocate(capacity * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object k = oldKeys[j];
+            if (k == null) continue;
+            int i = mix(k.hashCode()) & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = k;
+            vals[i] = oldVals[j];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>(size());
+        for (Object k : this.keys)
+            if (k != null) keys.add((K) k);
+        return keys;
+    }
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        for (int i = 0; i < capacity; i++)
+            if (keys[i] != null) values.add((V) vals[i]);
+        return values;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < capacity; i++) {
+            if (keys[i] == null) continue;
+            sb.append(keys[i] + "=> " + vals[i] + ", ");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
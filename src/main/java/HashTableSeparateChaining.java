@@ -1,16 +1,55 @@
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class HashTableSeparateChaining<K, V> {
     /**
      * Implementation of a HashTable
      * using separate chaining technique
      *
+     * With a positive rehash step the table grows incrementally: the old and
+     * the new table coexist and every insert, lookup or remove migrates a few
+     * buckets, so no single operation pays for rehashing the whole table. That is
+     * at least rehashStep buckets, and enough that the migration is over before
+     * the inserts fill the new table up to its own threshold.
+     *
+     * A bucket whose chain reaches treeifyThreshold entries, all keys being Comparable
+     * and of the same class, is turned into a BinarySearchTree so that lookups and
+     * removes in a collision heavy bucket no longer scan the whole chain. Rehashing
+     * turns the buckets it fills up to that length into trees again.
+     *
+     * putAll sizes the table once for the whole batch, getAll and removeAll sort
+     * their keys by bucket so each bucket is visited once. Like get, they look in
+     * both tables while an incremental rehash is in progress, rather than finish it.
+     *
+     * keyIterator, valueIterator and entryIterator walk the buckets in place and
+     * fail fast when the table is structurally modified other than through them.
+     * stream() is backed by a spliterator that splits by bucket range, so it can run
+     * in parallel. During an incremental rehash both walk the new table together with
+     * the part of the old one that is not migrated yet, without finishing the rehash.
+     *
+     * With recordStats the table counts gets, puts, probes and resizes for stats().
+     * Without it the only cost on the hot path is a test of a final boolean. The
+     * bucket histogram of stats() is computed on demand by a scan of the whole
+     * table, O(capacity), so it belongs in monitoring, not on a hot path.
+     *
      * Author: Irakoze Loraine, mukezwa@gmail.com
      */
-    private class Entry<K, V> {
+    private class Entry<K, V> implements Comparable<Entry<K, V>>, Map.Entry<K, V> {
         int hash; K key; V val;
 
         public Entry(K key, V val) {
@@ -24,18 +63,135 @@ public class HashTableSeparateChaining<K, V> {
             return key.equals(other.key);
         }
 
+        @Override public K getKey() {
+            return key;
+        }
+
+        @Override public V getValue() {
+            return val;
+        }
+
+        @Override public V setValue(V val) {
+            V oldVal = this.val;
+            this.val = val;
+            return oldVal;
+        }
+
+        //as specified by Map.Entry
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return key.equals(other.getKey()) && (val == null ? other.getValue() == null : val.equals(other.getValue()));
+        }
+
+        @Override public int hashCode() {
+            return hash ^ (val == null ? 0 : val.hashCode());
+        }
+
+        //only used inside a TreeBucket, where every key is Comparable and of the same class
+        @SuppressWarnings("unchecked")
+        @Override public int compareTo(Entry<K, V> other) {
+            return ((Comparable<Object>) key).compareTo(other.key);
+        }
+
         @Override public String toString(){
             return key + "=> " + val;
         }
     }
 
+    //a bucket whose entries are looked up in a tree ordered on the keys instead of a chain
+    private class TreeBucket extends AbstractCollection<Entry<K, V>> {
+        final Class<?> keyClass;
+        final BinarySearchTree<Entry<K, V>> tree = new BinarySearchTree<>(true);
+        //the same entries by identity, which iterates them and unlinks one in O(1)
+        final Set<Entry<K, V>> entries = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        TreeBucket(Class<?> keyClass) {
+            this.keyClass = keyClass;
+        }
+
+        @Override public int size() {
+            return entries.size();
+        }
+
+        //false when the tree already holds a key comparing equal to the entry's
+        @Override public boolean add(Entry<K, V> entry) {
+            if (!tree.add(entry)) return false;
+            entries.add(entry);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override public boolean remove(Object entry) {
+            if (!entries.remove(entry)) return false;
+            tree.remove((Entry<K, V>) entry);
+            return true;
+        }
+
+        //remove() takes the entry out of the tree too
+        @Override public Iterator<Entry<K, V>> iterator() {
+            return new Iterator<Entry<K, V>>() {
+                final Iterator<Entry<K, V>> entryIterator = entries.iterator();
+                Entry<K, V> lastReturned;
+
+                @Override public boolean hasNext() {
+                    return entryIterator.hasNext();
+                }
+
+                @Override public Entry<K, V> next() {
+                    return lastReturned = entryIterator.next();
+                }
+
+                @Override public void remove() {
+                    entryIterator.remove();
+                    tree.remove(lastReturned);
+                    lastReturned = null;
+                }
+            };
+        }
+
+        Entry<K, V> seek(K key) {
+            if (key.getClass() == keyClass) {
+                Entry<K, V> entry = tree.find(new Entry<>(key, null));
+                if (entry == null || entry.key.equals(key)) return entry;
+            }
+            //a key of another class, or one whose compareTo disagrees with equals
+            for (Entry<K, V> entry: this)
+                if (entry.key.equals(key))
+                    return entry;
+            return null;
+        }
+    }
+
     private static final int DEFAULT_CAPACITY = 3;
     private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final int DEFAULT_TREEIFY_THRESHOLD = 8;
+
+    private Collection<Entry<K, V>>[] table;
+
+    //table being drained while an incremental rehash is in progress, null otherwise
+    private Collection<Entry<K, V>>[] oldTable;
+    //buckets of the old table below this index have already been migrated
+    private int rehashIndex;
+    //least buckets migrated per operation, 0 rehashes the whole table at once
+    private final int rehashStep;
+    //buckets migrated per operation during the current incremental rehash
+    private int rehashBudget;
 
-    private LinkedList <Entry<K, V>> [] table;
+    //chain length at which a bucket gets a tree index, 0 never builds one
+    private final int treeifyThreshold;
+    //chain length below which a treeified bucket goes back to a plain chain
+    private final int untreeifyThreshold;
 
     private double maxLoadFactor;
     private int capacity, threshold, size = 0;
+    //structural modifications, checked by iterators and spliterators to fail fast
+    private int modCount;
+
+    //counters for stats(), only updated when recordStats is set
+    private final boolean recordStats;
+    private int lastProbes;
+    private long getCount, getProbes, putCount, putProbes, resizeCount, resizeNanos;
 
     public HashTableSeparateChaining() {
         this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
@@ -46,14 +202,40 @@ public class HashTableSeparateChaining<K, V> {
     }
 
     public HashTableSeparateChaining(int capacity, double maxLoadFactor) {
+        this(capacity, maxLoadFactor, 0);
+    }
+
+    public HashTableSeparateChaining(int capacity, double maxLoadFactor, int rehashStep) {
+        this(capacity, maxLoadFactor, rehashStep, DEFAULT_TREEIFY_THRESHOLD);
+    }
+
+    public HashTableSeparateChaining(int capacity, double maxLoadFactor, int rehashStep, int treeifyThreshold) {
+        this(capacity, maxLoadFactor, rehashStep, treeifyThreshold, false);
+    }
+
+    public HashTableSeparateChaining(int capacity, double maxLoadFactor, int rehashStep, int treeifyThreshold,
+                                     boolean recordStats) {
         if (capacity<0)
             throw new IllegalArgumentException("Illegal capacity");
         if (maxLoadFactor <= 0 || Double.isNaN(maxLoadFactor) || Double.isInfinite(maxLoadFactor))
             throw new IllegalArgumentException("Illegal maxLoadFactor");
+        if (rehashStep < 0)
+            throw new IllegalArgumentException("Illegal rehashStep");
+        if (treeifyThreshold < 0)
+            throw new IllegalArgumentException("Illegal treeifyThreshold");
+        this.rehashStep = rehashStep;
+        this.recordStats = recordStats;
+        this.treeifyThreshold = treeifyThreshold;
+        this.untreeifyThreshold = treeifyThreshold / 2;
         this.capacity = Math.max(DEFAULT_CAPACITY, capacity);
         this.maxLoadFactor = maxLoadFactor;
         threshold = (int) (this.capacity * maxLoadFactor);
-        table = new LinkedList[this.capacity];
+        table = newTable(this.capacity);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Collection<Entry<K, V>>[] newTable(int capacity) {
+        return new Collection[capacity];
     }
 
     //convert a hash value to an index
@@ -61,6 +243,17 @@ public class HashTableSeparateChaining<K, V> {
         return (keyHash & 0x7FFFFFFF) % capacity;
     }
 
+    //convert a hash value to an index of the given table
+    private int normalizeIndex(int keyHash, Collection<Entry<K, V>>[] tab) {
+        return (keyHash & 0x7FFFFFFF) % tab.length;
+    }
+
+    //the table holding the bucket of this hash, the old one until that bucket is migrated
+    private Collection<Entry<K, V>>[] tableFor(int keyHash) {
+        if (oldTable != null && normalizeIndex(keyHash, oldTable) >= rehashIndex) return oldTable;
+        return table;
+    }
+
     public int size() {
         return size;
     }
@@ -71,7 +264,9 @@ public class HashTableSeparateChaining<K, V> {
 
     public void clear() {
         Arrays.fill(table, null);
+        oldTable = null;
         size=0;
+        modCount++;
     }
 
     public boolean containsKey(K key) {
@@ -79,8 +274,10 @@ public class HashTableSeparateChaining<K, V> {
     }
 
     public boolean hashKey(K key) {
-        int bucketIndex = normalizeIndex(key.hashCode());
-        return bucketSeekEntry(bucketIndex, key) != null;
+        if (oldTable != null) rehashSomeBuckets();
+        Collection<Entry<K, V>>[] tab = tableFor(key.hashCode());
+        int bucketIndex = normalizeIndex(key.hashCode(), tab);
+        return bucketSeekEntry(tab, bucketIndex, key) != null;
     }
 
     public V put(K key, V val) {
@@ -91,40 +288,71 @@ public class HashTableSeparateChaining<K, V> {
     }
     public V insert(K key, V val) {
         if (key == null) throw new IllegalArgumentException("Null key");
+        if (oldTable != null) rehashSomeBuckets();
         Entry<K, V> newEntry = new Entry<>(key, val);
-        int bucketIndex = normalizeIndex(newEntry.hash);
-        return bucketInsertEntry(bucketIndex, newEntry);
+        Collection<Entry<K, V>>[] tab = tableFor(newEntry.hash);
+        int bucketIndex = normalizeIndex(newEntry.hash, tab);
+        V oldVal = bucketInsertEntry(tab, bucketIndex, newEntry);
+        if (recordStats) {
+            putCount++;
+            putProbes += lastProbes;
+        }
+        return oldVal;
     }
 
     public V get(K key) {
         if (key == null) return null;
-        int bucketIndex = normalizeIndex(key.hashCode());
-        Entry<K, V> entry = bucketSeekEntry(bucketIndex, key);
+        if (oldTable != null) rehashSomeBuckets();
+        Collection<Entry<K, V>>[] tab = tableFor(key.hashCode());
+        int bucketIndex = normalizeIndex(key.hashCode(), tab);
+        Entry<K, V> entry = bucketSeekEntry(tab, bucketIndex, key);
+        if (recordStats) {
+            getCount++;
+            getProbes += lastProbes;
+        }
         if (entry != null) return entry.val;
         return null;
     }
     public V remove(K key) {
         if (key == null) return null;
-        int bucketIndex = normalizeIndex(key.hashCode());
-        return bucketRemoveEntry(bucketIndex, key);
+        if (oldTable != null) rehashSomeBuckets();
+        Collection<Entry<K, V>>[] tab = tableFor(key.hashCode());
+        int bucketIndex = normalizeIndex(key.hashCode(), tab);
+        return bucketRemoveEntry(tab, bucketIndex, key);
     }
 
-    private V bucketRemoveEntry(int bucketIndex, K key) {
-        Entry<K, V> entry = bucketSeekEntry(bucketIndex, key);
+    private V bucketRemoveEntry(Collection<Entry<K, V>>[] tab, int bucketIndex, K key) {
+        Entry<K, V> entry = bucketSeekEntry(tab, bucketIndex, key);
         if (entry != null) {
-            LinkedList<Entry<K, V>> list = table[bucketIndex];
-            list.remove(entry);
+            Collection<Entry<K, V>> bucket = tab[bucketIndex];
+            bucket.remove(entry);
+            if (bucket instanceof HashTableSeparateChaining.TreeBucket && bucket.size() < untreeifyThreshold)
+                tab[bucketIndex] = new LinkedList<>(bucket);
             --size;
+            modCount++;
             return entry.val;
         }
         else return null;
     }
-    private V bucketInsertEntry(int bucketIndex, Entry<K,V> entry) {
-        LinkedList<Entry<K,V>> bucket = table[bucketIndex];
-        if (bucket == null) table[bucketIndex] = bucket = new LinkedList<>();
-        Entry<K, V> existEntry = bucketSeekEntry(bucketIndex, entry.key);
+    private V bucketInsertEntry(Collection<Entry<K, V>>[] tab, int bucketIndex, Entry<K,V> entry) {
+        Collection<Entry<K, V>> bucket = tab[bucketIndex];
+        if (bucket == null) tab[bucketIndex] = bucket = new LinkedList<>();
+        Entry<K, V> existEntry = bucketSeekEntry(tab, bucketIndex, entry.key);
         if (existEntry == null) {
-            bucket.add(entry);
+            if (bucket instanceof HashTableSeparateChaining.TreeBucket) {
+                TreeBucket treeBucket = (TreeBucket) bucket;
+                //a key the tree cannot order next to the others turns the bucket back into a chain
+                if (entry.key.getClass() != treeBucket.keyClass || !treeBucket.add(entry)) {
+                    tab[bucketIndex] = bucket = new LinkedList<>(bucket);
+                    bucket.add(entry);
+                }
+            }
+            else {
+                bucket.add(entry);
+                if (treeifyThreshold > 0 && bucket.size() >= treeifyThreshold)
+                    tab[bucketIndex] = treeify(bucket);
+            }
+            modCount++;
             if (++size > threshold) resizeTable();
             return null;
         }
@@ -134,48 +362,515 @@ public class HashTableSeparateChaining<K, V> {
             return oldVal;
         }
     }
-    private Entry<K,V> bucketSeekEntry(int bucketIndex, K key) {
+    private Entry<K,V> bucketSeekEntry(Collection<Entry<K, V>>[] tab, int bucketIndex, K key) {
         if (key == null) return null;
-        LinkedList<Entry<K, V>> bucket = table[bucketIndex];
+        Collection<Entry<K, V>> bucket = tab[bucketIndex];
+        if (recordStats) return countingSeekEntry(bucket, key);
         if (bucket == null) return null;
+        if (bucket instanceof HashTableSeparateChaining.TreeBucket) return ((TreeBucket) bucket).seek(key);
         for (Entry<K, V> entry: bucket)
             if (entry.key.equals(key))
                 return entry;
         return null;
     }
 
+    //bucketSeekEntry that leaves the number of entries it compared in lastProbes
+    private Entry<K,V> countingSeekEntry(Collection<Entry<K, V>> bucket, K key) {
+        lastProbes = 0;
+        if (bucket == null) return null;
+        if (bucket instanceof HashTableSeparateChaining.TreeBucket) {
+            lastProbes = 32 - Integer.numberOfLeadingZeros(bucket.size());
+            return ((TreeBucket) bucket).seek(key);
+        }
+        for (Entry<K, V> entry: bucket) {
+            lastProbes++;
+            if (entry.key.equals(key))
+                return entry;
+        }
+        return null;
+    }
+
+    //Turn a long chain into a tree, provided all its keys are Comparable and of one class
+    private Collection<Entry<K, V>> treeify(Collection<Entry<K, V>> bucket) {
+        Class<?> keyClass = bucket.iterator().next().key.getClass();
+        if (!Comparable.class.isAssignableFrom(keyClass)) return bucket;
+        for (Entry<K, V> entry: bucket)
+            if (entry.key.getClass() != keyClass) return bucket;
+
+        TreeBucket treeBucket = new TreeBucket(keyClass);
+        for (Entry<K, V> entry: bucket)
+            //two keys comparing equal without being equal cannot share a tree
+            if (!treeBucket.add(entry)) return bucket;
+        return treeBucket;
+    }
+
+    //treeify a plain chain that a rehash filled up to treeifyThreshold
+    private void treeifyIfLong(Collection<Entry<K, V>>[] tab, int bucketIndex) {
+        Collection<Entry<K, V>> bucket = tab[bucketIndex];
+        if (treeifyThreshold > 0 && bucket != null && bucket.size() >= treeifyThreshold
+                && !(bucket instanceof HashTableSeparateChaining.TreeBucket))
+            tab[bucketIndex] = treeify(bucket);
+    }
+
     private void resizeTable() {
+        if (recordStats) resizeCount++;
+        if (rehashStep > 0) {
+            startIncrementalRehash();
+            return;
+        }
+        rehash(capacity*2);
+    }
+
+    //move every entry at once into a table of the given capacity
+    private void rehash(int newCapacity) {
+        long start = recordStats ? System.nanoTime() : 0;
+        capacity=newCapacity;
+        threshold=(int) (capacity*maxLoadFactor);
+        Collection<Entry<K, V>>[] newTable = newTable(capacity);
+        moveEntries(table, 0, newTable);
+        //an incremental rehash in progress is finished by the same pass
+        if (oldTable != null) moveEntries(oldTable, rehashIndex, newTable);
+        oldTable = null;
+        for (int i = 0; i < capacity; i++) treeifyIfLong(newTable, i);
+        table = newTable;
+        modCount++;
+        if (recordStats) resizeNanos += System.nanoTime() - start;
+    }
+
+    //move the entries of the buckets of tab from index from on into newTable
+    private void moveEntries(Collection<Entry<K, V>>[] tab, int from, Collection<Entry<K, V>>[] newTable) {
+        for (int i = from; i < tab.length; i++) {
+            if (tab[i] == null) continue;
+            for (Entry<K, V> entry : tab[i]) {
+                int bucketIndex = normalizeIndex(entry.hash);
+                Collection<Entry<K, V>> bucket = newTable[bucketIndex];
+                if (bucket == null) newTable[bucketIndex] = bucket = new LinkedList<>();
+                bucket.add(entry);
+            }
+            tab[i] = null;
+        }
+    }
+
+    //swap in a table twice as large and leave the old one to be drained by later operations.
+    //Every insert migrates rehashBudget buckets first, so the previous rehash is always over here
+    private void startIncrementalRehash() {
+        oldTable = table;
+        rehashIndex = 0;
         capacity*=2;
         threshold=(int) (capacity*maxLoadFactor);
-        LinkedList<Entry<K,V>> [] newTable = new LinkedList[capacity];
-        for (int i = 0; i < table.length; i++) {
-            if (table[i] != null) {
-                for (Entry<K, V> entry : table[i]) {
-                    int bucketIndex = normalizeIndex(entry.hash);
-                    LinkedList<Entry<K, V>> bucket = newTable[bucketIndex];
-                    if (bucket == null) newTable[bucketIndex] = bucket = new LinkedList<>();
-                    bucket.add(entry);
+        table = newTable(capacity);
+        //the inserts left before the next resize must migrate the whole old table
+        int insertsLeft = Math.max(1, threshold - size);
+        rehashBudget = Math.max(rehashStep, (oldTable.length + insertsLeft - 1) / insertsLeft);
+    }
+
+    //migrate at most rehashBudget buckets from the old table to the new one
+    private void rehashSomeBuckets() {
+        long start = recordStats ? System.nanoTime() : 0;
+        for (int n = 0; n < rehashBudget && rehashIndex < oldTable.length; n++, rehashIndex++) {
+            Collection<Entry<K, V>> oldBucket = oldTable[rehashIndex];
+            if (oldBucket == null) continue;
+            for (Entry<K, V> entry : oldBucket) {
+                int bucketIndex = normalizeIndex(entry.hash);
+                Collection<Entry<K, V>> bucket = table[bucketIndex];
+                if (bucket == null) table[bucketIndex] = bucket = new LinkedList<>();
+                bucket.add(entry);
+            }
+            oldTable[rehashIndex] = null;
+            //the table doubled, so the entries of old bucket i went to buckets i and i + old length
+            treeifyIfLong(table, rehashIndex);
+            treeifyIfLong(table, rehashIndex + oldTable.length);
+        }
+        if (rehashIndex == oldTable.length) oldTable = null;
+        if (recordStats) resizeNanos += System.nanoTime() - start;
+    }
+
+    //grow the table once so that it holds expectedSize entries without resizing
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize <= threshold) return;
+        long needed = (long) Math.ceil(expectedSize / maxLoadFactor) + 1;
+        if (needed > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Illegal expectedSize");
+        if (recordStats) resizeCount++;
+        rehash(Math.max(capacity*2, (int) needed));
+    }
+
+    public void putAll(K[] keys, V[] vals) {
+        if (keys.length != vals.length) throw new IllegalArgumentException("Keys and values differ in length");
+        ensureCapacity(size + keys.length);
+        for (int i = 0; i < keys.length; i++)
+            insert(keys[i], vals[i]);
+    }
+
+    public void putAll(Iterable<? extends K> keys, Iterable<? extends V> vals) {
+        if (keys instanceof Collection) ensureCapacity(size + ((Collection<?>) keys).size());
+        Iterator<? extends V> valIterator = vals.iterator();
+        for (K key : keys) {
+            if (!valIterator.hasNext()) throw new IllegalArgumentException("Fewer values than keys");
+            insert(key, valIterator.next());
+        }
+        if (valIterator.hasNext()) throw new IllegalArgumentException("More values than keys");
+    }
+
+    //look up every key and write its value, or null, to out at the same position, returns the number found
+    public int getAll(K[] keys, V[] out) {
+        if (out.length < keys.length) throw new IllegalArgumentException("Output array too small");
+        if (oldTable != null) rehashSomeBuckets();
+        long[] order = bucketOrder(keys);
+        int found = 0;
+        for (int start = 0, end; start < order.length; start = end) {
+            Collection<Entry<K, V>>[] tab = tableOf(order[start]);
+            int bucketIndex = bucketIndexOf(order[start]);
+            end = runEnd(order, start);
+            Collection<Entry<K, V>> bucket = tab[bucketIndex];
+            if (end - start == 1 || bucket instanceof HashTableSeparateChaining.TreeBucket) {
+                for (int j = start; j < end; j++) {
+                    int pos = (int) order[j];
+                    Entry<K, V> entry = bucketSeekEntry(tab, bucketIndex, keys[pos]);
+                    if (recordStats) getProbes += lastProbes;
+                    out[pos] = entry == null ? null : entry.val;
+                    if (entry != null) found++;
                 }
-                table[i].clear();
-                table[i] = null;
+                continue;
             }
+            for (int j = start; j < end; j++) out[(int) order[j]] = null;
+            if (bucket == null) continue;
+            //several keys share this chain, match all of them in a single pass over it
+            for (Entry<K, V> entry : bucket)
+                for (int j = start; j < end; j++) {
+                    int pos = (int) order[j];
+                    if (entry.hash == keys[pos].hashCode() && entry.key.equals(keys[pos])) {
+                        out[pos] = entry.val;
+                        found++;
+                    }
+                }
+            if (recordStats) getProbes += bucket.size();
         }
-        table = newTable;
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] == null) out[i] = null;
+        if (recordStats) getCount += keys.length;
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    public int getAll(Iterable<? extends K> keys, V[] out) {
+        return getAll((K[]) toArray(keys), out);
+    }
+
+    //remove every key, returns the number of entries removed
+    public int removeAll(K[] keys) {
+        if (oldTable != null) rehashSomeBuckets();
+        long[] order = bucketOrder(keys);
+        int removed = 0;
+        for (int start = 0, end; start < order.length; start = end) {
+            Collection<Entry<K, V>>[] tab = tableOf(order[start]);
+            int bucketIndex = bucketIndexOf(order[start]);
+            end = runEnd(order, start);
+            Collection<Entry<K, V>> bucket = tab[bucketIndex];
+            if (bucket == null) continue;
+            if (end - start == 1 || bucket instanceof HashTableSeparateChaining.TreeBucket) {
+                for (int j = start; j < end; j++)
+                    if (bucketRemoveEntry(tab, bucketIndex, keys[(int) order[j]]) != null) removed++;
+                continue;
+            }
+            //several keys share this chain, unlink all of them in a single pass over it
+            for (Iterator<Entry<K, V>> it = bucket.iterator(); it.hasNext(); ) {
+                Entry<K, V> entry = it.next();
+                for (int j = start; j < end; j++) {
+                    K key = keys[(int) order[j]];
+                    if (entry.hash == key.hashCode() && entry.key.equals(key)) {
+                        it.remove();
+                        --size;
+                        modCount++;
+                        removed++;
+                        break;
+                    }
+                }
+            }
+            if (bucket.isEmpty()) tab[bucketIndex] = null;
+        }
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    public int removeAll(Iterable<? extends K> keys) {
+        return removeAll((K[]) toArray(keys));
+    }
+
+    //bucket number in the high and position in the low half of each long, sorted by bucket, null keys left out.
+    //Buckets of table are numbered from 0, those of the old table still to migrate from capacity on
+    private long[] bucketOrder(K[] keys) {
+        long[] order = new long[keys.length];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != null) {
+                int keyHash = keys[i].hashCode();
+                long bucket = tableFor(keyHash) == table ? normalizeIndex(keyHash)
+                        : capacity + (long) normalizeIndex(keyHash, oldTable);
+                order[n++] = bucket << 32 | i;
+            }
+        if (n < order.length) order = Arrays.copyOf(order, n);
+        long buckets = capacity + (oldTable == null ? 0L : oldTable.length);
+        if (buckets > 4L * n || buckets >= Integer.MAX_VALUE) {
+            Arrays.sort(order);
+            return order;
+        }
+        //a batch of the order of the table size is sorted faster by counting the keys of each bucket
+        int[] start = new int[(int) buckets + 1];
+        for (long packed : order) start[(int) (packed >>> 32) + 1]++;
+        for (int i = 0; i < buckets; i++) start[i + 1] += start[i];
+        long[] sorted = new long[n];
+        for (long packed : order) sorted[start[(int) (packed >>> 32)]++] = packed;
+        return sorted;
+    }
+
+    //the table and the index within it of a bucket numbered by bucketOrder
+    private Collection<Entry<K, V>>[] tableOf(long packed) {
+        return packed >>> 32 < capacity ? table : oldTable;
+    }
+
+    private int bucketIndexOf(long packed) {
+        long bucket = packed >>> 32;
+        return (int) (bucket < capacity ? bucket : bucket - capacity);
+    }
+
+    //end of the run of positions that fall in the same bucket as order[start]
+    private static int runEnd(long[] order, int start) {
+        int end = start + 1;
+        while (end < order.length && order[end] >>> 32 == order[start] >>> 32) end++;
+        return end;
+    }
+
+    private static Object[] toArray(Iterable<?> items) {
+        if (items instanceof Collection) return ((Collection<?>) items).toArray();
+        List<Object> list = new ArrayList<>();
+        for (Object item : items) list.add(item);
+        return list.toArray();
+    }
+
+    public Iterator<K> keyIterator() {
+        return new TableIterator<K>() {
+            @Override public K next() {
+                return nextEntry().key;
+            }
+        };
+    }
+
+    public Iterator<V> valueIterator() {
+        return new TableIterator<V>() {
+            @Override public V next() {
+                return nextEntry().val;
+            }
+        };
+    }
+
+    public Iterator<Map.Entry<K, V>> entryIterator() {
+        return new TableIterator<Map.Entry<K, V>>() {
+            @Override public Map.Entry<K, V> next() {
+                return nextEntry();
+            }
+        };
+    }
+
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new BucketSpliterator(new BucketCursor(table, oldTable), modCount);
+    }
+
+    public Stream<Map.Entry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    //Walks the buckets of the table in order, without copying them. While an incremental rehash
+    //is in progress it goes by bucket of the old table instead: one not migrated yet is read where
+    //it is, a migrated one from the two buckets of the new table it was split into. A migration
+    //between two steps then neither hides an entry from the walk nor shows it twice
+    private class BucketCursor {
+        final Collection<Entry<K, V>>[] tab, old;
+        //steps [next, fence) are still to be walked
+        int next, fence;
+        //whether the current step reads the two buckets it was split into, and which one
+        boolean split;
+        int part;
+        //the current bucket, possibly null, and where it lives
+        Collection<Entry<K, V>> bucket;
+        Collection<Entry<K, V>>[] bucketTab;
+        int bucketIndex;
+
+        //a walk over all of tab, or of old and tab while old is being migrated into tab
+        BucketCursor(Collection<Entry<K, V>>[] tab, Collection<Entry<K, V>>[] old) {
+            this(tab, old, 0, old != null ? old.length : tab.length);
+        }
+
+        BucketCursor(Collection<Entry<K, V>>[] tab, Collection<Entry<K, V>>[] old, int next, int fence) {
+            this.tab = tab;
+            this.old = old;
+            this.next = next;
+            this.fence = fence;
+        }
+
+        //move to the next bucket, returns false when there is none
+        boolean advance() {
+            if (split && part == 0) {
+                part = 1;
+                bucketIndex += old.length;
+            }
+            else {
+                if (next >= fence) return false;
+                bucketIndex = next++;
+                part = 0;
+                split = old != null && (oldTable != old || bucketIndex < rehashIndex);
+                bucketTab = old == null || split ? tab : old;
+            }
+            bucket = bucketTab[bucketIndex];
+            return true;
+        }
+    }
+
+    private abstract class TableIterator<T> implements Iterator<T> {
+        final BucketCursor cursor = new BucketCursor(table, oldTable);
+        int expectedModCount = modCount;
+        Iterator<Entry<K, V>> bucketIterator;
+        //bucket and iterator of the entry last returned, for remove()
+        Collection<Entry<K, V>>[] lastTab;
+        int lastBucketIndex;
+        Collection<Entry<K, V>> lastBucket;
+        Iterator<Entry<K, V>> lastIterator;
+        Entry<K, V> lastReturned;
+
+        @Override public boolean hasNext() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            while (bucketIterator == null || !bucketIterator.hasNext()) {
+                if (!cursor.advance()) return false;
+                bucketIterator = cursor.bucket == null ? null : cursor.bucket.iterator();
+            }
+            return true;
+        }
+
+        Entry<K, V> nextEntry() {
+            if (!hasNext()) throw new NoSuchElementException();
+            lastTab = cursor.bucketTab;
+            lastBucketIndex = cursor.bucketIndex;
+            lastBucket = cursor.bucket;
+            lastIterator = bucketIterator;
+            return lastReturned = bucketIterator.next();
+        }
+
+        @Override public void remove() {
+            if (lastReturned == null) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            Collection<Entry<K, V>>[] tab = lastTab;
+            int bucketIndex = lastBucketIndex;
+            //the old bucket being iterated was migrated meanwhile, its entries now live in table
+            if (tab == cursor.old && tab[bucketIndex] == null) {
+                tab = table;
+                bucketIndex = normalizeIndex(lastReturned.hash);
+            }
+            Collection<Entry<K, V>> current = tab[bucketIndex];
+            lastIterator.remove();
+            //the iterated bucket was replaced, by a migration or by a plain chain, which must lose the entry too
+            if (current != lastBucket) current.remove(lastReturned);
+            if (current instanceof HashTableSeparateChaining.TreeBucket && current.size() < untreeifyThreshold)
+                tab[bucketIndex] = new LinkedList<>(current);
+            --size;
+            expectedModCount = ++modCount;
+            lastReturned = null;
+        }
+    }
+
+    //entries of the steps [next, fence) of a BucketCursor, split in halves of that range
+    private class BucketSpliterator implements Spliterator<Map.Entry<K, V>> {
+        final BucketCursor cursor;
+        final int expectedModCount;
+        Iterator<Entry<K, V>> bucketIterator;
+
+        BucketSpliterator(BucketCursor cursor, int expectedModCount) {
+            this.cursor = cursor;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+            while (bucketIterator == null || !bucketIterator.hasNext()) {
+                if (!cursor.advance()) return false;
+                bucketIterator = cursor.bucket == null ? null : cursor.bucket.iterator();
+            }
+            action.accept(bucketIterator.next());
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            return true;
+        }
+
+        @Override public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+            if (bucketIterator != null)
+                while (bucketIterator.hasNext()) action.accept(bucketIterator.next());
+            bucketIterator = null;
+            while (cursor.advance())
+                if (cursor.bucket != null)
+                    for (Entry<K, V> entry : cursor.bucket)
+                        action.accept(entry);
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+
+        @Override public Spliterator<Map.Entry<K, V>> trySplit() {
+            int mid = (cursor.next + cursor.fence) >>> 1;
+            if (bucketIterator != null || cursor.split || mid <= cursor.next) return null;
+            BucketSpliterator prefix = new BucketSpliterator(
+                    new BucketCursor(cursor.tab, cursor.old, cursor.next, mid), expectedModCount);
+            cursor.next = mid;
+            return prefix;
+        }
+
+        //entries are spread evenly over the buckets, so the share of the steps left
+        @Override public long estimateSize() {
+            int steps = cursor.old != null ? cursor.old.length : cursor.tab.length;
+            return (long) size * (cursor.fence - cursor.next) / steps;
+        }
+
+        @Override public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+
+    //snapshot of the bucket histogram and, with recordStats, of the operation counters.
+    //The histogram is built by visiting every bucket, so a call costs O(capacity)
+    public HashTableStats stats() {
+        int[] histogram = new int[1];
+        int treeified = 0;
+        for (int t = 0; t < 2; t++) {
+            Collection<Entry<K, V>>[] tab = t == 0 ? table : oldTable;
+            if (tab == null) continue;
+            //buckets of the old table that are already migrated are not counted
+            for (int i = tab == oldTable ? rehashIndex : 0; i < tab.length; i++) {
+                int length = tab[i] == null ? 0 : tab[i].size();
+                if (length >= histogram.length) histogram = Arrays.copyOf(histogram, length + 1);
+                histogram[length]++;
+                if (tab[i] instanceof HashTableSeparateChaining.TreeBucket) treeified++;
+            }
+        }
+        return new HashTableStats(size, capacity, histogram, treeified,
+                getCount, getProbes, putCount, putProbes, resizeCount, resizeNanos);
     }
     public List<K> keys(){
         List<K> keys = new ArrayList<>(size());
-        for (LinkedList<Entry<K,V>> bucket: table)
+        for (Collection<Entry<K, V>> bucket: table)
             if (bucket != null)
                 for (Entry<K,V> entry: bucket)
                     keys.add(entry.key);
+        if (oldTable != null)
+            for (int i = rehashIndex; i < oldTable.length; i++)
+                if (oldTable[i] != null)
+                    for (Entry<K,V> entry: oldTable[i])
+                        keys.add(entry.key);
         return keys;
     }
     public List<V> values(){
         List<V> values = new ArrayList<>(size());
-        for (LinkedList<Entry<K,V>> bucket: table)
+        for (Collection<Entry<K, V>> bucket: table)
             if (bucket != null)
                 for (Entry<K,V> entry: bucket)
                     values.add(entry.val);
+        if (oldTable != null)
+            for (int i = rehashIndex; i < oldTable.length; i++)
+                if (oldTable[i] != null)
+                    for (Entry<K,V> entry: oldTable[i])
+                        values.add(entry.val);
         return values;
     }
 
@@ -187,6 +882,12 @@ public class HashTableSeparateChaining<K, V> {
             for (Entry<K,V> entry: table[i])
                 sb.append(entry+", ");
         }
+        if (oldTable != null)
+            for (int i = rehashIndex; i < oldTable.length; i++) {
+                if (oldTable[i] == null) continue;
+                for (Entry<K,V> entry: oldTable[i])
+                    sb.append(entry+", ");
+            }
         sb.append("}");
         return sb.toString();
     }
@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+public final class HashTableStats {
+    /**
+     * Point in time snapshot of the internals of a HashTableSeparateChaining.
+     *
+     * The bucket histogram and load factor are always filled in. The get/put and
+     * resize counters stay at zero unless the table was created with stats enabled.
+     */
+    private final int size, capacity, maxChainLength, treeifiedBuckets;
+    private final int[] bucketLengthHistogram;
+    private final long getCount, getProbes, putCount, putProbes, resizeCount, resizeNanos;
+
+    HashTableStats(int size, int capacity, int[] bucketLengthHistogram, int treeifiedBuckets,
+                   long getCount, long getProbes, long putCount, long putProbes,
+                   long resizeCount, long resizeNanos) {
+        this.size = size;
+        this.capacity = capacity;
+        this.bucketLengthHistogram = bucketLengthHistogram;
+        this.maxChainLength = bucketLengthHistogram.length - 1;
+        this.treeifiedBuckets = treeifiedBuckets;
+        this.getCount = getCount;
+        this.getProbes = getProbes;
+        this.putCount = putCount;
+        this.putProbes = putProbes;
+        this.resizeCount = resizeCount;
+        this.resizeNanos = resizeNanos;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public double loadFactor() {
+        return (double) size / capacity;
+    }
+
+    //histogram[n] is the number of buckets holding n entries
+    public int[] bucketLengthHistogram() {
+        return bucketLengthHistogram.clone();
+    }
+
+    public int maxChainLength() {
+        return maxChainLength;
+    }
+
+    public int treeifiedBuckets() {
+        return treeifiedBuckets;
+    }
+
+    public long getCount() {
+        return getCount;
+    }
+
+    //entries compared per get, a tree indexed bucket counts the depth of a balanced tree of its size
+    public double averageGetProbes() {
+        return getCount == 0 ? 0 : (double) getProbes / getCount;
+    }
+
+    public long putCount() {
+        return putCount;
+    }
+
+    public double averagePutProbes() {
+        return putCount == 0 ? 0 : (double) putProbes / putCount;
+    }
+
+    public long resizeCount() {
+        return resizeCount;
+    }
+
+    //time spent rehashing, including the migration steps of an incremental rehash
+    public long resizeNanos() {
+        return resizeNanos;
+    }
+
+    @Override public String toString() {
+        return "HashTableStats{size=" + size + ", capacity=" + capacity
+                + ", loadFactor=" + String.format("%.3f", loadFactor())
+                + ", maxChainLength=" + maxChainLength
+                + ", treeifiedBuckets=" + treeifiedBuckets
+                + ", bucketLengthHistogram=" + Arrays.toString(bucketLengthHistogram)
+                + ", gets=" + getCount + ", averageGetProbes=" + String.format("%.3f", averageGetProbes())
+                + ", puts=" + putCount + ", averagePutProbes=" + String.format("%.3f", averagePutProbes())
+                + ", resizes=" + resizeCount + ", resizeMillis=" + resizeNanos / 1_000_000 + "}";
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+public class IndexedPriorityQueue<T extends Comparable<T>> {
+    /**
+     * Implementation of an indexed min priority queue using a binary heap.
+     *
+     * Every value is attached to an id in [0, maxSize). Two int arrays map ids to
+     * heap positions (pm) and heap positions back to ids (im), so contains and
+     * positionOf are O(1) and decrease, increase, update and delete of any id are
+     * O(log(n)), without the boxing of a map from values to positions.
+     */
+    private final int maxSize;
+    private int size = 0;
+
+    //value of each id, null for ids not in the queue
+    private final Object[] values;
+    //heap position of each id, -1 for ids not in the queue
+    private final int[] pm;
+    //id at each heap position
+    private final int[] im;
+
+    public IndexedPriorityQueue(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize <= 0 is not allowed");
+        this.maxSize = maxSize;
+        values = new Object[maxSize];
+        pm = new int[maxSize];
+        im = new int[maxSize];
+        Arrays.fill(pm, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            pm[im[i]] = -1;
+            values[im[i]] = null;
+        }
+        size = 0;
+    }
+
+    public boolean contains(int id) {
+        checkId(id);
+        return pm[id] != -1;
+    }
+
+    //position of the id in the heap, -1 when it is not in the queue
+    public int positionOf(int id) {
+        checkId(id);
+        return pm[id];
+    }
+
+    public T valueOf(int id) {
+        checkContains(id);
+        return value(id);
+    }
+
+    public void insert(int id, T value) {
+        if (contains(id)) throw new IllegalArgumentException("Id already in the queue: " + id);
+        if (value == null) throw new IllegalArgumentException("Null value");
+        pm[id] = size;
+        im[size] = id;
+        values[id] = value;
+        navigateUp(size++);
+    }
+
+    public int peekMinId() {
+        checkNotEmpty();
+        return im[0];
+    }
+
+    public T peekMinValue() {
+        checkNotEmpty();
+        return value(im[0]);
+    }
+
+    public int pollMinId() {
+        int id = peekMinId();
+        delete(id);
+        return id;
+    }
+
+    public T pollMinValue() {
+        T value = peekMinValue();
+        delete(im[0]);
+        return value;
+    }
+
+    public T delete(int id) {
+        checkContains(id);
+        int i = pm[id];
+        swap(i, --size);
+        if (i != size) {
+            navigateDown(i);
+            navigateUp(i);
+        }
+        T value = value(id);
+        values[id] = null;
+        pm[id] = -1;
+        return value;
+    }
+
+    //set a new value for the id, moving it up or down as needed, returns the previous value
+    public T update(int id, T value) {
+        checkContains(id);
+        if (value == null) throw new IllegalArgumentException("Null value");
+        int i = pm[id];
+        T oldValue = value(id);
+        values[id] = value;
+        navigateDown(i);
+        navigateUp(i);
+        return oldValue;
+    }
+
+    //lower the value of the id, a value that is not smaller is ignored
+    public void decrease(int id, T value) {
+        checkContains(id);
+        if (value == null) throw new IllegalArgumentException("Null value");
+        if (value.compareTo(value(id)) < 0) {
+            values[id] = value;
+            navigateUp(pm[id]);
+        }
+    }
+
+    //raise the value of the id, a value that is not larger is ignored
+    public void increase(int id, T value) {
+        checkContains(id);
+        if (value == null) throw new IllegalArgumentException("Null value");
+        if (value(id).compareTo(value) < 0) {
+            values[id] = value;
+            navigateDown(pm[id]);
+        }
+    }
+
+    //Check if the heap is a min heap, suppose i=0
+    public boolean isMinHeap(int i) {
+        if (i >= size) return true;
+        int left = 2 * i + 1;
+        int right = 2 * i + 2;
+        if (left < size && less(left, i)) return false;
+        if (right < size && less(right, i)) return false;
+        return isMinHeap(left) && isMinHeap(right);
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(im[i]).append("=").append(values[im[i]]);
+        }
+        return sb.append("]").toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T value(int id) {
+        return (T) values[id];
+    }
+
+    //Compare the values at two heap positions
+    private boolean less(int a, int b) {
+        return value(im[a]).compareTo(value(im[b])) < 0;
+    }
+
+    private void navigateUp(int i) {
+        int parent = (i - 1) / 2;
+        while (i > 0 && less(i, parent)) {
+            swap(i, parent);
+            i = parent;
+            parent = (i - 1) / 2;
+        }
+    }
+
+    private void navigateDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            int right = 2 * i + 2;
+            int smallest = i;
+            if (left < size && less(left, smallest)) smallest = left;
+            if (right < size && less(right, smallest)) smallest = right;
+            if (smallest == i) break;
+            swap(smallest, i);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        pm[im[a]] = b;
+        pm[im[b]] = a;
+        int tmp = im[a];
+        im[a] = im[b];
+        im[b] = tmp;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= maxSize) throw new IllegalArgumentException("Id out of range: " + id);
+    }
+
+    private void checkContains(int id) {
+        if (!contains(id)) throw new IllegalArgumentException("Id not in the queue: " + id);
+    }
+
+    private void checkNotEmpty() {
+        if (isEmpty()) throw new RuntimeException("Priority queue is empty");
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+public class IntIntTable {
+    /**
+     * Implementation of an int to int HashTable
+     * using open addressing with linear probing.
+     *
+     * Keys and values are stored in primitive arrays, so neither is ever boxed.
+     * The key 0 marks a free slot, so a mapping for 0 is kept aside in its own fields.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final int FREE_KEY = 0;
+
+    private int[] keys;
+    private int[] vals;
+
+    private boolean hasFreeKey = false;
+    private int freeKeyVal;
+
+    private final int noEntryValue;
+    private double maxLoadFactor;
+    private int capacity, mask, threshold, size = 0;
+
+    public IntIntTable() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    public IntIntTable(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    //noEntryValue is what get/put/remove return when there is no mapping for a key
+    public IntIntTable(int capacity, double maxLoadFactor, int noEntryValue) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Illegal capacity");
+        if (maxLoadFactor <= 0 || maxLoadFactor >= 1 || Double.isNaN(maxLoadFactor))
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        this.maxLoadFactor = maxLoadFactor;
+        this.noEntryValue = noEntryValue;
+        allocate(HashTableOpenAddressing.tableSizeFor((int) Math.ceil(Math.max(capacity, 1) / maxLoadFactor)));
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        threshold = (int) (newCapacity * maxLoadFactor);
+        keys = new int[newCapacity];
+        vals = new int[newCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) return hasFreeKey;
+        return seekSlot(key) >= 0;
+    }
+
+    public int put(int key, int val) {
+        if (key == FREE_KEY) {
+            int oldVal = hasFreeKey ? freeKeyVal : noEntryValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+            }
+            freeKeyVal = val;
+            return oldVal;
+        }
+        int i = HashTableOpenAddressing.mix(key) & mask;
+        int k;
+        while ((k = keys[i]) != FREE_KEY) {
+            if (k == key) {
+                int oldVal = vals[i];
+                vals[i] = val;
+                return oldVal;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size >= threshold && capacity == HashTableOpenAddressing.MAXIMUM_CAPACITY)
+            throw HashTableOpenAddressing.tableFull(capacity);
+        keys[i] = key;
+        vals[i] = val;
+        if (++size > threshold) resizeTable();
+        return noEntryValue;
+    }
+
+    public int get(int key) {
+        return getOrDefault(key, noEntryValue);
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == FREE_KEY) return hasFreeKey ? freeKeyVal : defaultValue;
+        int slot = seekSlot(key);
+        return slot >= 0 ? vals[slot] : defaultValue;
+    }
+
+    public int remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) return noEntryValue;
+            hasFreeKey = false;
+            --size;
+            return freeKeyVal;
+        }
+        int slot = seekSlot(key);
+        if (slot < 0) return noEntryValue;
+        int oldVal = vals[slot];
+        deleteSlot(slot);
+        --size;
+        return oldVal;
+    }
+
+    private int seekSlot(int key) {
+        int i = HashTableOpenAddressing.mix(key) & mask;
+        int k;
+        while ((k = keys[i]) != FREE_KEY) {
+            if (k == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    //Backward-shift deletion, see HashTableOpenAddressing
+    private void deleteSlot(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            int k = keys[i];
+            if (k == FREE_KEY) break;
+            int home = HashTableOpenAddressing.mix(k) & mask;
+            if (hole <= i ? (hole < home && home <= i) : (hole < home || home <= i)) continue;
+            keys[hole] = k;
+            vals[hole] = vals[i];
+            hole = i;
+        }
+        keys[hole] = FREE_KEY;
+    }
+
+    private void resizeTable() {
+        if (capacity == HashTableOpenAddressing.MAXIMUM_CAPACITY)
+            throw HashTableOpenAddressing.tableFull(capacity);
+        int[] oldKeys = keys;
+        int[] oldVals = vals;
+        allocate(capacity * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            int k = oldKeys[j];
+            if (k == FREE_KEY) continue;
+            int i = HashTableOpenAddressing.mix(k) & mask;
+            while (keys[i] != FREE_KEY) i = (i + 1) & mask;
+            keys[i] = k;
+            vals[i] = oldVals[j];
+        }
+    }
+
+    public int[] keys() {
+        int[] keys = new int[size];
+        int n = 0;
+        if (hasFreeKey) keys[n++] = FREE_KEY;
+        for (int i = 0; i < capacity; i++)
+            if (this.keys[i] != FREE_KEY) keys[n++] = this.keys[i];
+        return keys;
+    }
+    public int[] values() {
+        int[] values = new int[size];
+        int n = 0;
+        if (hasFreeKey) values[n++] = freeKeyVal;
+        for (int i = 0; i < capacity; i++)
+            if (keys[i] != FREE_KEY) values[n++] = vals[i];
+        return values;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        if (hasFreeKey) sb.append(FREE_KEY + "=> " + freeKeyVal + ", ");
+        for (int i = 0; i < capacity; i++) {
+            if (keys[i] == FREE_KEY) continue;
+            sb.append(keys[i] + "=> " + vals[i] + ", ");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
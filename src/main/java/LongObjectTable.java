@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LongObjectTable<V> {
+    /**
+     * Implementation of a long to Object HashTable
+     * using open addressing with linear probing.
+     *
+     * Keys are stored in a primitive array and never boxed.
+     * The key 0 marks a free slot, so a mapping for 0 is kept aside in its own fields.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final long FREE_KEY = 0L;
+
+    private long[] keys;
+    private Object[] vals;
+
+    private boolean hasFreeKey = false;
+    private V freeKeyVal;
+
+    private double maxLoadFactor;
+    private int capacity, mask, threshold, size = 0;
+
+    public LongObjectTable() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongObjectTable(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongObjectTable(int capacity, double maxLoadFactor) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Illegal capacity");
+        if (maxLoadFactor <= 0 || maxLoadFactor >= 1 || Double.isNaN(maxLoadFactor))
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        this.maxLoadFactor = maxLoadFactor;
+        allocate(HashTableOpenAddressing.tableSizeFor((int) Math.ceil(Math.max(capacity, 1) / maxLoadFactor)));
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        threshold = (int) (newCapacity * maxLoadFactor);
+        keys = new long[newCapacity];
+        vals = new Object[newCapacity];
+    }
+
+    //fold the upper half of the key into the lower half before mixing
+    private static int hash(long key) {
+        return HashTableOpenAddressing.mix((int) (key ^ (key >>> 32)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(vals, null);
+        hasFreeKey = false;
+        freeKeyVal = null;
+        size = 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) return hasFreeKey;
+        return seekSlot(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V val) {
+        if (key == FREE_KEY) {
+            V oldVal = freeKeyVal;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+            }
+            freeKeyVal = val;
+            return oldVal;
+        }
+        int i = hash(key) & mask;
+        long k;
+        while ((k = keys[i]) != FREE_KEY) {
+            if (k == key) {
+                V oldVal = (V) vals[i];
+                vals[i] = val;
+                return oldVal;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size >= threshold && capacity == HashTableOpenAddressing.MAXIMUM_CAPACITY)
+            throw HashTableOpenAddressing.tableFull(capacity);
+        keys[i] = key;
+        vals[i] = val;
+        if (++size > threshold) resizeTable();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == FREE_KEY) return freeKeyVal;
+        int slot = seekSlot(key);
+        return slot >= 0 ? (V) vals[slot] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == FREE_KEY) {
+            V oldVal = freeKeyVal;
+            if (hasFreeKey) --size;
+            hasFreeKey = false;
+            freeKeyVal = null;
+            return oldVal;
+        }
+        int slot = seekSlot(key);
+        if (slot < 0) return null;
+        V oldVal = (V) vals[slot];
+        deleteSlot(slot);
+        --size;
+        return oldVal;
+    }
+
+    private int seekSlot(long key) {
+        int i = hash(key) & mask;
+        long k;
+        while ((k = keys[i]) != FREE_KEY) {
+            if (k == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    //Backward-shift deletion, see HashTableOpenAddressing
+    private void deleteSlot(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = keys[i];
+            if (k == FREE_KEY) break;
+            int home = hash(k) & mask;
+            if (hole <= i ? (hole < home && home <= i) : (hole < home || home <= i)) continue;
+            keys[hole] = k;
+            vals[hole] = vals[i];
+            hole = i;
+        }
+        keys[hole] = FREE_KEY;
+        vals[hole] = null;
+    }
+
+    private void resizeTable() {
+        if (capacity == HashTableOpenAddressing.MAXIMUM_CAPACITY)
+            throw HashTableOpenAddressing.tableFull(capacity);
+        long[] oldKeys = keys;
+        Object[] oldVals = vals;
+        allocate(capacity * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k == FREE_KEY) continue;
+            int i = hash(k) & mask;
+            while (keys[i] != FREE_KEY) i = (i + 1) & mask;
+            keys[i] = k;
+            vals[i] = oldVals[j];
+        }
+    }
+
+    public long[] keys() {
+        long[] keys = new long[size];
+        int n = 0;
+        if (hasFreeKey) keys[n++] = FREE_KEY;
+        for (int i = 0; i < capacity; i++)
+            if (this.keys[i] != FREE_KEY) keys[n++] = this.keys[i];
+        return keys;
+    }
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        if (hasFreeKey) values.add(freeKeyVal);
+        for (int i = 0; i < capacity; i++)
+            if (keys[i] != FREE_KEY) values.add((V) vals[i]);
+        return values;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        if (hasFreeKey) sb.append(FREE_KEY + "=> " + freeKeyVal + ", ");
+        for (int i = 0; i < capacity; i++) {
+            if (keys[i] == FREE_KEY) continue;
+            sb.append(keys[i] + "=> " + vals[i] + ", ");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
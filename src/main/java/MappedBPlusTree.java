@@ -0,0 +1,542 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class MappedBPlusTree implements AutoCloseable {
+    /**
+     * Implementation of an ordered set of longs as a B+ tree
+     * whose nodes are fixed size pages of a memory mapped file.
+     *
+     * The tree works like BPlusTree: keys sit in sorted arrays, leaves are linked
+     * for range scans, and remove borrows from or merges with a sibling so pages
+     * stay at least half full. A page is decoded into long[] and int[] arrays when
+     * it is first needed and kept in an LRU BoundedCache of decoded pages; a page
+     * that changed is written back to the mapping when the cache evicts it, or on
+     * flush. Only the cached pages live on the heap, so the set can be much larger
+     * than the heap, and the operating system decides which parts of the file stay
+     * in memory.
+     *
+     * Page 0 holds the header. Pages freed by merges are chained in a free list and
+     * reused before the file grows. The header carries a clean flag which is cleared
+     * before the first change after a flush and set again by flush and close; a file
+     * that was not closed cleanly may hold half written changes and is refused when
+     * opened.
+     */
+    private static final long MAGIC = 0x4D41505042545245L;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0, VERSION_OFFSET = 8, CLEAN_OFFSET = 12, PAGE_SIZE_OFFSET = 16,
+            ROOT_OFFSET = 20, PAGE_COUNT_OFFSET = 24, FREE_OFFSET = 28, HEIGHT_OFFSET = 32, SIZE_OFFSET = 40;
+
+    //type, key count, next leaf or next free page, then the keys, then the children of an inner page
+    private static final int PAGE_HEADER_SIZE = 16;
+    private static final byte LEAF = 1, INNER = 2, FREE = 3;
+
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final int DEFAULT_PAGE_SIZE = 4096;
+    private static final int DEFAULT_CACHED_PAGES = 1024;
+    //more than the pages a single operation holds at once, so none of them is evicted under it
+    private static final int MIN_CACHED_PAGES = 64;
+
+    private static final class Page {
+        final int id;
+        final boolean leaf;
+        //one slot more than a page holds, to take a key before the page is split
+        final long[] keys;
+        final int[] children;
+        int count, next;
+        boolean dirty;
+
+        Page(int id, boolean leaf, int order) {
+            this.id = id;
+            this.leaf = leaf;
+            keys = new long[order + 1];
+            children = leaf ? null : new int[order + 2];
+        }
+    }
+
+    private final Path path;
+    private final int pageSize, leafOrder, innerOrder;
+    private FileChannel channel;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    private int root, pageCount, freePage, height;
+    private long size;
+    private boolean clean;
+    private int modCount = 0;
+
+    private final BoundedCache<Integer, Page> cache;
+    //changed pages not yet written to the mapping, whether or not they are still cached
+    private final HashTableSeparateChaining<Integer, Page> dirtyPages = new HashTableSeparateChaining<>();
+
+    //set by insert when a page had to split: the new right page and its separator
+    private int splitPage;
+    private long splitKey;
+
+    //open the tree stored in the file, creating an empty one if the file does not exist
+    public MappedBPlusTree(Path path) {
+        this(path, DEFAULT_PAGE_SIZE, DEFAULT_CACHED_PAGES);
+    }
+
+    //the page size is only used when a new file is created
+    public MappedBPlusTree(Path path, int pageSize, int cachedPages) {
+        if (pageSize < 128 || pageSize > SEGMENT_SIZE || Integer.bitCount(pageSize) != 1)
+            throw new IllegalArgumentException("Illegal pageSize " + pageSize);
+        if (cachedPages < MIN_CACHED_PAGES)
+            throw new IllegalArgumentException("Illegal cachedPages " + cachedPages);
+        this.path = path;
+        cache = new BoundedCache<>(cachedPages, null, 0, false,
+                (id, page, cause) -> {
+                    if (cause == BoundedCache.RemovalCause.SIZE && page.dirty) writePage(page);
+                },
+                System::nanoTime);
+        try {
+            boolean exists = Files.exists(path) && Files.size(path) > 0;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (exists) {
+                ensureMapped(PAGE_SIZE_OFFSET + 4);
+                if (segments[0].getLong(MAGIC_OFFSET) != MAGIC || segments[0].getInt(VERSION_OFFSET) != VERSION)
+                    throw new IllegalStateException("Not a MappedBPlusTree file: " + path);
+                if (segments[0].getInt(CLEAN_OFFSET) != 1)
+                    throw new IllegalStateException("MappedBPlusTree file was not closed cleanly: " + path);
+                pageSize = segments[0].getInt(PAGE_SIZE_OFFSET);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.pageSize = pageSize;
+        leafOrder = (pageSize - PAGE_HEADER_SIZE) / 8;
+        innerOrder = (pageSize - PAGE_HEADER_SIZE - 4) / 12;
+        if (segments.length > 0) {
+            root = segments[0].getInt(ROOT_OFFSET);
+            pageCount = segments[0].getInt(PAGE_COUNT_OFFSET);
+            freePage = segments[0].getInt(FREE_OFFSET);
+            height = segments[0].getInt(HEIGHT_OFFSET);
+            size = segments[0].getLong(SIZE_OFFSET);
+            ensureMapped((long) pageCount * pageSize);
+            clean = true;
+        }
+        else {
+            ensureMapped(pageSize);
+            segments[0].putLong(MAGIC_OFFSET, MAGIC);
+            segments[0].putInt(VERSION_OFFSET, VERSION);
+            segments[0].putInt(PAGE_SIZE_OFFSET, pageSize);
+            reset();
+            flush();
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    //hit rate of the decoded page cache
+    public double cacheHitRate() {
+        return cache.hitRate();
+    }
+
+    public void clear() {
+        markFileDirty();
+        cache.clear();
+        dirtyPages.clear();
+        reset();
+        modCount++;
+    }
+
+    //an empty tree: the header page and one empty leaf as the root
+    private void reset() {
+        pageCount = 1;
+        freePage = 0;
+        size = 0;
+        height = 1;
+        root = allocate(true).id;
+    }
+
+    public boolean contains(long key) {
+        Page page = load(root);
+        while (!page.leaf) page = load(page.children[childIndex(page, key)]);
+        return search(page, key) >= 0;
+    }
+
+    public boolean add(long key) {
+        long before = size;
+        if (insert(load(root), key)) {
+            Page newRoot = allocate(false);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = splitPage;
+            newRoot.count = 1;
+            root = newRoot.id;
+            height++;
+        }
+        return size != before;
+    }
+
+    public boolean remove(long key) {
+        Page rootPage = load(root);
+        if (!delete(rootPage, key)) return false;
+        if (!rootPage.leaf && rootPage.count == 0) {
+            root = rootPage.children[0];
+            free(rootPage);
+            height--;
+        }
+        return true;
+    }
+
+    //Iterate over the keys in order, along the leaf links
+    public PrimitiveIterator.OfLong iterator() {
+        return rangeIterator(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    //Iterate in order over the keys between lo and hi, both included
+    public PrimitiveIterator.OfLong rangeIterator(long lo, long hi) {
+        Page page = load(root);
+        while (!page.leaf) page = load(page.children[childIndex(page, lo)]);
+        int i = search(page, lo);
+        return new LeafIterator(page, i >= 0 ? i : -i - 1, hi);
+    }
+
+    //write every changed page and the header to the file, and mark it as cleanly closed
+    public void flush() {
+        for (Page page : dirtyPages.values()) writePage(page);
+        dirtyPages.clear();
+        MappedByteBuffer header = segments[0];
+        header.putInt(ROOT_OFFSET, root);
+        header.putInt(PAGE_COUNT_OFFSET, pageCount);
+        header.putInt(FREE_OFFSET, freePage);
+        header.putInt(HEIGHT_OFFSET, height);
+        header.putLong(SIZE_OFFSET, size);
+        for (MappedByteBuffer segment : segments)
+            segment.force();
+        header.putInt(CLEAN_OFFSET, 1);
+        header.force();
+        clean = true;
+    }
+
+    @Override public void close() {
+        if (!channel.isOpen()) return;
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments = new MappedByteBuffer[0];
+    }
+
+    //clear the clean flag on disk before the first change after a flush
+    private void markFileDirty() {
+        if (!clean) return;
+        segments[0].putInt(CLEAN_OFFSET, 0);
+        segments[0].force();
+        clean = false;
+    }
+
+    private void markDirty(Page page) {
+        if (page.dirty) return;
+        markFileDirty();
+        page.dirty = true;
+        dirtyPages.put(page.id, page);
+    }
+
+    //the decoded page, from the cache, from the pages waiting to be written, or from the file
+    private Page load(int id) {
+        Page page = cache.get(id);
+        if (page != null) return page;
+        page = dirtyPages.get(id);
+        if (page == null) page = readPage(id);
+        cache.put(id, page);
+        return page;
+    }
+
+    private Page allocate(boolean leaf) {
+        int id;
+        if (freePage != 0) {
+            id = freePage;
+            freePage = segment(id).getInt(offset(id) + 8);
+        }
+        else {
+            id = pageCount++;
+            ensureMapped((long) pageCount * pageSize);
+        }
+        Page page = new Page(id, leaf, leaf ? leafOrder : innerOrder);
+        markDirty(page);
+        cache.put(id, page);
+        return page;
+    }
+
+    //put a page emptied by a merge on the free list
+    private void free(Page page) {
+        cache.remove(page.id);
+        dirtyPages.remove(page.id);
+        page.dirty = false;
+        MappedByteBuffer segment = segment(page.id);
+        int base = offset(page.id);
+        segment.put(base, FREE);
+        segment.putInt(base + 8, freePage);
+        freePage = page.id;
+    }
+
+    private Page readPage(int id) {
+        MappedByteBuffer segment = segment(id);
+        int base = offset(id);
+        byte type = segment.get(base);
+        if (type != LEAF && type != INNER) throw new IllegalStateException("Corrupt page " + id + " in " + path);
+        Page page = new Page(id, type == LEAF, type == LEAF ? leafOrder : innerOrder);
+        page.count = segment.getInt(base + 4);
+        page.next = segment.getInt(base + 8);
+        for (int i = 0; i < page.count; i++) page.keys[i] = segment.getLong(base + PAGE_HEADER_SIZE + 8 * i);
+        if (!page.leaf) {
+            int children = base + PAGE_HEADER_SIZE + 8 * innerOrder;
+            for (int i = 0; i <= page.count; i++) page.children[i] = segment.getInt(children + 4 * i);
+        }
+        return page;
+    }
+
+    private void writePage(Page page) {
+        MappedByteBuffer segment = segment(page.id);
+        int base = offset(page.id);
+        segment.put(base, page.leaf ? LEAF : INNER);
+        segment.putInt(base + 4, page.count);
+        segment.putInt(base + 8, page.next);
+        for (int i = 0; i < page.count; i++) segment.putLong(base + PAGE_HEADER_SIZE + 8 * i, page.keys[i]);
+        if (!page.leaf) {
+            int children = base + PAGE_HEADER_SIZE + 8 * innerOrder;
+            for (int i = 0; i <= page.count; i++) segment.putInt(children + 4 * i, page.children[i]);
+        }
+        page.dirty = false;
+        dirtyPages.remove(page.id);
+    }
+
+    //Binary search of the keys of a page: the index of key, or -(insertion point) - 1
+    private static int search(Page page, long key) {
+        return Arrays.binarySearch(page.keys, 0, page.count, key);
+    }
+
+    //The child of an inner page whose subtree holds key: separators equal to key lead right
+    private static int childIndex(Page page, long key) {
+        int i = search(page, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private int minKeys(Page page) {
+        return (page.leaf ? leafOrder : innerOrder) / 2;
+    }
+
+    //Insert into the subtree of page, returns whether page split into splitPage
+    private boolean insert(Page page, long key) {
+        if (page.leaf) {
+            int i = search(page, key);
+            if (i >= 0) return false;
+            markDirty(page);
+            insertKey(page, -i - 1, key);
+            size++;
+            modCount++;
+            if (page.count <= leafOrder) return false;
+            splitLeaf(page);
+            return true;
+        }
+        int c = childIndex(page, key);
+        if (!insert(load(page.children[c]), key)) return false;
+        markDirty(page);
+        System.arraycopy(page.children, c + 1, page.children, c + 2, page.count - c);
+        page.children[c + 1] = splitPage;
+        insertKey(page, c, splitKey);
+        if (page.count <= innerOrder) return false;
+        splitInner(page);
+        return true;
+    }
+
+    private static void insertKey(Page page, int i, long key) {
+        System.arraycopy(page.keys, i, page.keys, i + 1, page.count - i);
+        page.keys[i] = key;
+        page.count++;
+    }
+
+    private static void removeKey(Page page, int i) {
+        System.arraycopy(page.keys, i + 1, page.keys, i, page.count - i - 1);
+        page.count--;
+    }
+
+    private void splitLeaf(Page page) {
+        Page right = allocate(true);
+        int half = page.count / 2;
+        right.count = page.count - half;
+        System.arraycopy(page.keys, half, right.keys, 0, right.count);
+        page.count = half;
+        right.next = page.next;
+        page.next = right.id;
+        splitPage = right.id;
+        splitKey = right.keys[0];
+    }
+
+    //The middle key moves up, the keys and children after it go to a new right page
+    private void splitInner(Page page) {
+        Page right = allocate(false);
+        int half = page.count / 2;
+        splitKey = page.keys[half];
+        right.count = page.count - half - 1;
+        System.arraycopy(page.keys, half + 1, right.keys, 0, right.count);
+        System.arraycopy(page.children, half + 1, right.children, 0, right.count + 1);
+        page.count = half;
+        splitPage = right.id;
+    }
+
+    //Delete from the subtree of page, fixing any child left with too few keys
+    private boolean delete(Page page, long key) {
+        if (page.leaf) {
+            int i = search(page, key);
+            if (i < 0) return false;
+            markDirty(page);
+            removeKey(page, i);
+            size--;
+            modCount++;
+            return true;
+        }
+        int c = childIndex(page, key);
+        Page child = load(page.children[c]);
+        if (!delete(child, key)) return false;
+        if (child.count < minKeys(child)) fixUnderflow(page, c, child);
+        return true;
+    }
+
+    //Refill child c of parent from a sibling that can spare a key, or merge it with one
+    private void fixUnderflow(Page parent, int c, Page child) {
+        markDirty(parent);
+        markDirty(child);
+        Page left = c > 0 ? load(parent.children[c - 1]) : null;
+        if (left != null && left.count > minKeys(left)) {
+            markDirty(left);
+            if (child.leaf) {
+                insertKey(child, 0, left.keys[left.count - 1]);
+                removeKey(left, left.count - 1);
+                parent.keys[c - 1] = child.keys[0];
+            } else {
+                System.arraycopy(child.children, 0, child.children, 1, child.count + 1);
+                child.children[0] = left.children[left.count];
+                insertKey(child, 0, parent.keys[c - 1]);
+                parent.keys[c - 1] = left.keys[left.count - 1];
+                removeKey(left, left.count - 1);
+            }
+            return;
+        }
+        Page right = c < parent.count ? load(parent.children[c + 1]) : null;
+        if (right != null && right.count > minKeys(right)) {
+            markDirty(right);
+            if (child.leaf) {
+                insertKey(child, child.count, right.keys[0]);
+                removeKey(right, 0);
+                parent.keys[c] = right.keys[0];
+            } else {
+                insertKey(child, child.count, parent.keys[c]);
+                child.children[child.count] = right.children[0];
+                parent.keys[c] = right.keys[0];
+                System.arraycopy(right.children, 1, right.children, 0, right.count);
+                removeKey(right, 0);
+            }
+            return;
+        }
+        if (left != null) merge(parent, c - 1, left, child);
+        else merge(parent, c, child, right);
+    }
+
+    //Merge child i + 1 of parent into child i, drop the separator between them and free the right page
+    private void merge(Page parent, int i, Page left, Page right) {
+        markDirty(left);
+        if (left.leaf) {
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            left.count += right.count;
+            left.next = right.next;
+        } else {
+            left.keys[left.count++] = parent.keys[i];
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            System.arraycopy(right.children, 0, left.children, left.count, right.count + 1);
+            left.count += right.count;
+        }
+        removeKey(parent, i);
+        System.arraycopy(parent.children, i + 2, parent.children, i + 1, parent.count - i);
+        free(right);
+    }
+
+    private MappedByteBuffer segment(int id) {
+        return segments[(int) (((long) id * pageSize) >>> SEGMENT_SHIFT)];
+    }
+
+    private int offset(int id) {
+        return (int) (((long) id * pageSize) & SEGMENT_MASK);
+    }
+
+    //map enough segments to reach the given file offset, growing the file if needed
+    private void ensureMapped(long end) {
+        int needed = (int) ((end + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        if (needed <= segments.length) return;
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, needed);
+        try {
+            for (int i = segments.length; i < needed; i++)
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * SEGMENT_SIZE, SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments = grown;
+    }
+
+    //Walks the leaf links from a starting position, up to a bound
+    private class LeafIterator implements PrimitiveIterator.OfLong {
+        final long hi;
+        final int expectedModCount = modCount;
+        Page leaf;
+        int index;
+
+        LeafIterator(Page leaf, int index, long hi) {
+            this.leaf = leaf;
+            this.index = index;
+            this.hi = hi;
+            skipExhausted();
+        }
+
+        //move past leaves with nothing left to return
+        private void skipExhausted() {
+            while (leaf != null && index >= leaf.count) {
+                leaf = leaf.next == 0 ? null : load(leaf.next);
+                index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (expectedModCount != modCount) throw new ConcurrentModificationException();
+            return leaf != null && leaf.keys[index] <= hi;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) throw new NoSuchElementException();
+            long key = leaf.keys[index++];
+            skipExhausted();
+            return key;
+        }
+    }
+}
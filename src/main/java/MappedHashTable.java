@@ -0,0 +1,529 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class MappedHashTable implements AutoCloseable {
+    /**
+     * Implementation of a persistent, off heap HashTable
+     * using separate chaining over a memory mapped file.
+     *
+     * The file holds a header, an array of bucket heads and an append only log
+     * of records. Every put or remove appends a record that points to the previous
+     * head of its bucket, so a chain lists the versions of its keys newest first and
+     * records are never modified once written. Only the bucket heads change in place.
+     *
+     * The header carries a clean flag that is cleared before the first write after a
+     * commit and set again once everything has been forced to disk. Opening a file that
+     * was not closed cleanly rebuilds the bucket heads by replaying the log up to the
+     * last record whose checksum is intact. A cleanly closed file opens without any scan.
+     *
+     * Overwritten and removed records stay in the log until compact() rewrites the
+     * live entries into a fresh file that atomically replaces the old one. put and
+     * remove call it themselves once dead records take more than maxGarbageRatio of
+     * the log (half by default) and at least MIN_COMPACTION_GARBAGE bytes, so chains
+     * and the file stay within a constant factor of the live data. Each compaction
+     * copies no more than the garbage written since the previous one. A ratio of 1
+     * or more turns this off and leaves compact() to the caller.
+     */
+    private static final long MAGIC = 0x4D41505045444854L;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0, VERSION_OFFSET = 8, CLEAN_OFFSET = 12,
+            CAPACITY_OFFSET = 16, SIZE_OFFSET = 24, DATA_END_OFFSET = 32, GARBAGE_OFFSET = 40;
+
+    //crc, type, hash, key length, value length, next record
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + 4 + 4 + 4 + 8;
+    private static final byte TYPE_PUT = 1, TYPE_REMOVE = 2;
+
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final double DEFAULT_MAX_GARBAGE_RATIO = 0.5;
+    //below this much garbage a compaction would cost more in file creation and syncing than it saves
+    private static final long MIN_COMPACTION_GARBAGE = 1 << 20;
+
+    private final Path path;
+    private final double maxLoadFactor, maxGarbageRatio;
+
+    private FileChannel channel;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    private int capacity, mask;
+    private long threshold, size, dataEnd, garbage, logStart;
+    private boolean clean;
+
+    private final CRC32 crc = new CRC32();
+    private byte[] scratch = new byte[256];
+
+    //open the table stored in the file, creating an empty one if the file does not exist
+    public MappedHashTable(String path) {
+        this(Paths.get(path), DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public MappedHashTable(Path path) {
+        this(path, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    //the capacity is only used when a new file is created
+    public MappedHashTable(Path path, int capacity, double maxLoadFactor) {
+        this(path, capacity, maxLoadFactor, DEFAULT_MAX_GARBAGE_RATIO);
+    }
+
+    public MappedHashTable(Path path, int capacity, double maxLoadFactor, double maxGarbageRatio) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Illegal capacity");
+        if (maxLoadFactor <= 0 || Double.isNaN(maxLoadFactor) || Double.isInfinite(maxLoadFactor))
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        if (maxGarbageRatio <= 0 || Double.isNaN(maxGarbageRatio))
+            throw new IllegalArgumentException("Illegal maxGarbageRatio");
+        this.path = path;
+        this.maxLoadFactor = maxLoadFactor;
+        this.maxGarbageRatio = maxGarbageRatio;
+        try {
+            open(HashTableOpenAddressing.tableSizeFor(Math.max(capacity, 16)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void open(int newCapacity) throws IOException {
+        boolean exists = Files.exists(path) && Files.size(path) >= HEADER_SIZE;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments = new MappedByteBuffer[0];
+        if (!exists) {
+            setCapacity(newCapacity);
+            ensureMapped(logStart);
+            size = garbage = 0;
+            dataEnd = logStart;
+            putLong(MAGIC_OFFSET, MAGIC);
+            putInt(VERSION_OFFSET, VERSION);
+            putLong(CAPACITY_OFFSET, capacity);
+            clean = false;
+            commit();
+            return;
+        }
+        ensureMapped(HEADER_SIZE);
+        if (getLong(MAGIC_OFFSET) != MAGIC || getInt(VERSION_OFFSET) != VERSION)
+            throw new IllegalStateException("Not a MappedHashTable file: " + path);
+        setCapacity((int) getLong(CAPACITY_OFFSET));
+        ensureMapped(Math.max(logStart, channel.size()));
+        if (getInt(CLEAN_OFFSET) == 1) {
+            size = getLong(SIZE_OFFSET);
+            dataEnd = getLong(DATA_END_OFFSET);
+            garbage = getLong(GARBAGE_OFFSET);
+            clean = true;
+        }
+        else recover();
+    }
+
+    private void setCapacity(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        threshold = (long) (newCapacity * maxLoadFactor);
+        logStart = HEADER_SIZE + 8L * newCapacity;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //bytes taken by records that have been overwritten or removed
+    public long garbageBytes() {
+        return garbage;
+    }
+
+    public void clear() {
+        rebuild(HashTableOpenAddressing.tableSizeFor(DEFAULT_CAPACITY), false);
+    }
+
+    private static int hash(byte[] key) {
+        return HashTableOpenAddressing.mix(Arrays.hashCode(key));
+    }
+
+    private long bucketOffset(int keyHash) {
+        return HEADER_SIZE + 8L * (keyHash & mask);
+    }
+
+    public boolean containsKey(byte[] key) {
+        long record = seekRecord(key, hash(key));
+        return record != 0 && getByte(record + 4) == TYPE_PUT;
+    }
+
+    public byte[] get(byte[] key) {
+        if (key == null) return null;
+        long record = seekRecord(key, hash(key));
+        if (record == 0 || getByte(record + 4) != TYPE_PUT) return null;
+        return readValue(record);
+    }
+
+    public byte[] put(byte[] key, byte[] val) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        if (val == null) throw new IllegalArgumentException("Null value");
+        int keyHash = hash(key);
+        long record = seekRecord(key, keyHash);
+        byte[] oldVal = null;
+        if (record != 0 && getByte(record + 4) == TYPE_PUT) {
+            oldVal = readValue(record);
+            garbage += recordLength(record);
+        }
+        else size++;
+        appendRecord(TYPE_PUT, keyHash, key, val);
+        if (size > threshold) rebuild(capacity * 2, true);
+        else if (oldVal != null) compactIfWasteful();
+        return oldVal;
+    }
+
+    public byte[] remove(byte[] key) {
+        if (key == null) return null;
+        int keyHash = hash(key);
+        long record = seekRecord(key, keyHash);
+        if (record == 0 || getByte(record + 4) != TYPE_PUT) return null;
+        byte[] oldVal = readValue(record);
+        garbage += recordLength(record);
+        long tombstone = appendRecord(TYPE_REMOVE, keyHash, key, new byte[0]);
+        garbage += recordLength(tombstone);
+        size--;
+        compactIfWasteful();
+        return oldVal;
+    }
+
+    //fixed width helpers storing longs as 8 byte big endian arrays
+    public Long put(long key, long val) {
+        byte[] oldVal = put(longToBytes(key), longToBytes(val));
+        return oldVal != null ? bytesToLong(oldVal) : null;
+    }
+
+    public long get(long key, long defaultValue) {
+        byte[] val = get(longToBytes(key));
+        return val != null ? bytesToLong(val) : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return containsKey(longToBytes(key));
+    }
+
+    public boolean remove(long key) {
+        return remove(longToBytes(key)) != null;
+    }
+
+    private static byte[] longToBytes(long v) {
+        return ByteBuffer.allocate(8).putLong(v).array();
+    }
+
+    private static long bytesToLong(byte[] b) {
+        return ByteBuffer.wrap(b).getLong();
+    }
+
+    public List<byte[]> keys() {
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < capacity; i++)
+            for (long record : liveRecords(i))
+                keys.add(readKey(record));
+        return keys;
+    }
+
+    public List<byte[]> values() {
+        List<byte[]> values = new ArrayList<>();
+        for (int i = 0; i < capacity; i++)
+            for (long record : liveRecords(i))
+                values.add(readValue(record));
+        return values;
+    }
+
+    //newest record of each key in a bucket, skipping removed keys
+    private List<Long> liveRecords(int bucketIndex) {
+        List<Long> seen = new ArrayList<>();
+        List<Long> live = new ArrayList<>();
+        for (long record = getLong(HEADER_SIZE + 8L * bucketIndex); record != 0; record = getLong(record + 17)) {
+            boolean shadowed = false;
+            for (long newer : seen)
+                if (getInt(newer + 5) == getInt(record + 5) && sameKey(newer, record)) {
+                    shadowed = true;
+                    break;
+                }
+            if (shadowed) continue;
+            seen.add(record);
+            if (getByte(record + 4) == TYPE_PUT) live.add(record);
+        }
+        return live;
+    }
+
+    //offset of the newest record for the key, or 0 if it never was in the table
+    private long seekRecord(byte[] key, int keyHash) {
+        long record = getLong(bucketOffset(keyHash));
+        while (record != 0) {
+            if (getInt(record + 5) == keyHash && getInt(record + 9) == key.length && keyEquals(record, key))
+                return record;
+            record = getLong(record + 17);
+        }
+        return 0;
+    }
+
+    private boolean keyEquals(long record, byte[] key) {
+        byte[] buf = scratch(key.length);
+        read(record + RECORD_HEADER_SIZE, buf, key.length);
+        for (int i = 0; i < key.length; i++)
+            if (buf[i] != key[i]) return false;
+        return true;
+    }
+
+    private boolean sameKey(long a, long b) {
+        int len = getInt(a + 9);
+        if (getInt(b + 9) != len) return false;
+        byte[] key = readKey(a);
+        return keyEquals(b, key);
+    }
+
+    private byte[] readKey(long record) {
+        byte[] key = new byte[getInt(record + 9)];
+        read(record + RECORD_HEADER_SIZE, key, key.length);
+        return key;
+    }
+
+    private byte[] readValue(long record) {
+        byte[] val = new byte[getInt(record + 13)];
+        read(record + RECORD_HEADER_SIZE + getInt(record + 9), val, val.length);
+        return val;
+    }
+
+    private long recordLength(long record) {
+        return RECORD_HEADER_SIZE + (long) getInt(record + 9) + getInt(record + 13);
+    }
+
+    //write a record at the end of the log and make it the head of its bucket
+    private long appendRecord(byte type, int keyHash, byte[] key, byte[] val) {
+        markDirty();
+        long bucket = bucketOffset(keyHash);
+        int length = RECORD_HEADER_SIZE + key.length + val.length;
+        ByteBuffer buf = ByteBuffer.wrap(scratch(length), 0, length);
+        buf.putInt(0).put(type).putInt(keyHash).putInt(key.length).putInt(val.length)
+                .putLong(getLong(bucket)).put(key).put(val);
+        crc.reset();
+        crc.update(buf.array(), 4, length - 4);
+        buf.putInt(0, (int) crc.getValue());
+
+        long record = dataEnd;
+        ensureMapped(record + length);
+        write(record, buf.array(), length);
+        putLong(bucket, record);
+        dataEnd += length;
+        return record;
+    }
+
+    //rebuild the bucket heads from the log after the file was not closed cleanly
+    private void recover() throws IOException {
+        for (long i = HEADER_SIZE; i < logStart; i += 8)
+            putLong(i, 0);
+        size = garbage = 0;
+        long end = Math.max(logStart, channel.size());
+        long record = logStart;
+        while (record + RECORD_HEADER_SIZE <= end) {
+            byte type = getByte(record + 4);
+            int keyLength = getInt(record + 9), valLength = getInt(record + 13);
+            if ((type != TYPE_PUT && type != TYPE_REMOVE) || keyLength < 0 || valLength < 0
+                    || record + RECORD_HEADER_SIZE + (long) keyLength + valLength > end)
+                break;
+            int length = RECORD_HEADER_SIZE + keyLength + valLength;
+            byte[] buf = scratch(length);
+            read(record, buf, length);
+            crc.reset();
+            crc.update(buf, 4, length - 4);
+            if ((int) crc.getValue() != ByteBuffer.wrap(buf).getInt(0)) break;
+
+            byte[] key = Arrays.copyOfRange(buf, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + keyLength);
+            int keyHash = getInt(record + 5);
+            long previous = seekRecord(key, keyHash);
+            boolean wasLive = previous != 0 && getByte(previous + 4) == TYPE_PUT;
+            if (wasLive) garbage += recordLength(previous);
+            if (type == TYPE_PUT) {
+                if (!wasLive) size++;
+            }
+            else {
+                garbage += length;
+                if (wasLive) size--;
+            }
+            putLong(bucketOffset(keyHash), record);
+            record += length;
+        }
+        dataEnd = record;
+        //wipe whatever a crash left behind the last intact record so a later recovery cannot pick it up
+        byte[] zeros = new byte[1 << 16];
+        for (long i = dataEnd; i < end; i += zeros.length)
+            write(i, zeros, (int) Math.min(zeros.length, end - i));
+        clean = false;
+        commit();
+    }
+
+    //clear the clean flag on disk before the first change after a commit
+    private void markDirty() {
+        if (!clean) return;
+        putInt(CLEAN_OFFSET, 0);
+        segments[0].force();
+        clean = false;
+    }
+
+    //force every change to disk and mark the file as cleanly closed
+    public void commit() {
+        if (clean) return;
+        putLong(SIZE_OFFSET, size);
+        putLong(DATA_END_OFFSET, dataEnd);
+        putLong(GARBAGE_OFFSET, garbage);
+        for (MappedByteBuffer segment : segments)
+            segment.force();
+        putInt(CLEAN_OFFSET, 1);
+        segments[0].force();
+        clean = true;
+    }
+
+    //rewrite the live entries into a fresh file, dropping overwritten and removed records
+    public void compact() {
+        int newCapacity = capacity;
+        while (size > (long) (newCapacity * maxLoadFactor) * 2 && newCapacity < (1 << 30)) newCapacity *= 2;
+        rebuild(newCapacity, true);
+    }
+
+    private void compactIfWasteful() {
+        if (garbage >= MIN_COMPACTION_GARBAGE && garbage > maxGarbageRatio * (dataEnd - logStart)) compact();
+    }
+
+    private void rebuild(int newCapacity, boolean copyEntries) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(tmp);
+            MappedHashTable copy = new MappedHashTable(tmp, newCapacity, maxLoadFactor, maxGarbageRatio);
+            if (copyEntries)
+                for (int i = 0; i < capacity; i++)
+                    for (long record : liveRecords(i))
+                        copy.put(readKey(record), readValue(record));
+            copy.close();
+            channel.close();
+            segments = new MappedByteBuffer[0];
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open(newCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override public void close() {
+        if (!channel.isOpen()) return;
+        commit();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments = new MappedByteBuffer[0];
+    }
+
+    private byte[] scratch(int length) {
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        return scratch;
+    }
+
+    //map enough segments to reach the given file offset, growing the file if needed
+    private void ensureMapped(long end) {
+        int needed = (int) ((end + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        if (needed <= segments.length) return;
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, needed);
+        try {
+            for (int i = segments.length; i < needed; i++)
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * SEGMENT_SIZE, SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments = grown;
+    }
+
+    private byte getByte(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & SEGMENT_MASK));
+    }
+
+    private void putByte(long pos, byte b) {
+        segments[(int) (pos >>> SEGMENT_SHIFT)].put((int) (pos & SEGMENT_MASK), b);
+    }
+
+    private int getInt(long pos) {
+        int offset = (int) (pos & SEGMENT_MASK);
+        if (offset + 4 <= SEGMENT_SIZE) return segments[(int) (pos >>> SEGMENT_SHIFT)].getInt(offset);
+        int v = 0;
+        for (int i = 0; i < 4; i++) v = (v << 8) | (getByte(pos + i) & 0xFF);
+        return v;
+    }
+
+    private void putInt(long pos, int v) {
+        int offset = (int) (pos & SEGMENT_MASK);
+        if (offset + 4 <= SEGMENT_SIZE) segments[(int) (pos >>> SEGMENT_SHIFT)].putInt(offset, v);
+        else for (int i = 0; i < 4; i++) putByte(pos + i, (byte) (v >>> (24 - 8 * i)));
+    }
+
+    private long getLong(long pos) {
+        int offset = (int) (pos & SEGMENT_MASK);
+        if (offset + 8 <= SEGMENT_SIZE) return segments[(int) (pos >>> SEGMENT_SHIFT)].getLong(offset);
+        long v = 0;
+        for (int i = 0; i < 8; i++) v = (v << 8) | (getByte(pos + i) & 0xFF);
+        return v;
+    }
+
+    private void putLong(long pos, long v) {
+        int offset = (int) (pos & SEGMENT_MASK);
+        if (offset + 8 <= SEGMENT_SIZE) segments[(int) (pos >>> SEGMENT_SHIFT)].putLong(offset, v);
+        else for (int i = 0; i < 8; i++) putByte(pos + i, (byte) (v >>> (56 - 8 * i)));
+    }
+
+    //copy bytes out of the file, splitting the copy where it crosses a segment boundary
+    private void read(long pos, byte[] dst, int length) {
+        int done = 0;
+        while (done < length) {
+            ByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)].duplicate();
+            int offset = (int) (pos & SEGMENT_MASK);
+            int n = (int) Math.min(length - done, SEGMENT_SIZE - offset);
+            segment.position(offset);
+            segment.get(dst, done, n);
+            done += n;
+            pos += n;
+        }
+    }
+
+    private void write(long pos, byte[] src, int length) {
+        int done = 0;
+        while (done < length) {
+            ByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)].duplicate();
+            int offset = (int) (pos & SEGMENT_MASK);
+            int n = (int) Math.min(length - done, SEGMENT_SIZE - offset);
+            segment.position(offset);
+            segment.put(src, done, n);
+            done += n;
+            pos += n;
+        }
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < capacity; i++)
+            for (long record : liveRecords(i))
+                sb.append(Arrays.toString(readKey(record)) + "=> " + Arrays.toString(readValue(record)) + ", ");
+        sb.append("}");
+        return sb.toString();
+    }
+}
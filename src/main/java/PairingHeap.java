@@ -0,0 +1,124 @@
+import java.util.Comparator;
+
+public class PairingHeap<T> {
+    /**
+     * Implementation of a meldable min priority queue using a pairing heap.
+     *
+     * The heap is a tree whose root holds the minimum; every node keeps its first
+     * child and its next sibling. add and merge link two trees in O(1): the larger
+     * root becomes the first child of the smaller one. poll removes the root and
+     * pairs its children left to right, then links the pairs right to left, in
+     * O(log(n)) amortized. Both passes are loops, so a long child list cannot
+     * overflow the stack.
+     *
+     * Elements are ordered by the comparator, or by their natural order without one.
+     */
+    private static class Node<T> {
+        T element;
+        Node<T> child, sibling;
+
+        Node(T element) {
+            this.element = element;
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+    private int size = 0;
+
+    public PairingHeap() {
+        this(null);
+    }
+
+    public PairingHeap(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    public T peek() {
+        if (isEmpty()) return null;
+        return root.element;
+    }
+
+    public void add(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        root = link(root, new Node<>(element));
+        size++;
+    }
+
+    public T poll() {
+        if (isEmpty()) return null;
+        T min = root.element;
+        root = combineSiblings(root.child);
+        size--;
+        return min;
+    }
+
+    //Move every element of other into this heap in O(1), leaving other empty
+    public void merge(PairingHeap<T> other) {
+        if (other == this) return;
+        root = link(root, other.root);
+        size += other.size;
+        other.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator != null) return comparator.compare(a, b);
+        return ((Comparable<? super T>) a).compareTo(b);
+    }
+
+    //Make the larger of two roots the first child of the smaller one
+    private Node<T> link(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (compare(b.element, a.element) < 0) {
+            Node<T> tmp = a;
+            a = b;
+            b = tmp;
+        }
+        b.sibling = a.child;
+        a.child = b;
+        a.sibling = null;
+        return a;
+    }
+
+    //Two pass pairing of a sibling list into a single tree
+    private Node<T> combineSiblings(Node<T> first) {
+        if (first == null) return null;
+        //first pass: link the siblings in pairs, chaining the pairs in reverse order through sibling
+        Node<T> pairs = null;
+        while (first != null) {
+            Node<T> a = first, b = first.sibling;
+            first = b == null ? null : b.sibling;
+            a.sibling = null;
+            if (b != null) b.sibling = null;
+            Node<T> pair = link(a, b);
+            pair.sibling = pairs;
+            pairs = pair;
+        }
+        //second pass: link the pairs from the last one back to the first
+        Node<T> result = pairs;
+        pairs = pairs.sibling;
+        result.sibling = null;
+        while (pairs != null) {
+            Node<T> next = pairs.sibling;
+            pairs.sibling = null;
+            result = link(result, pairs);
+            pairs = next;
+        }
+        return result;
+    }
+}
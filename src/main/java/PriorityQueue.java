@@ -4,6 +4,10 @@ public class PriorityQueue<T extends  Comparable<T>> {
     /**
      * Implementation of a min priority queue using a binary heap.
      *
+     * Bulk loads (the array and collection constructors, addAll and merge) append
+     * the elements and heapify bottom up in O(n), then build the index map once,
+     * instead of sifting and updating the map for every element.
+     *
      * Author: Irakoze Loraine, mukezwa@gmail.com
      */
     private int heapSize = 0;
@@ -24,23 +28,13 @@ public class PriorityQueue<T extends  Comparable<T>> {
 
     //using heapify process to add an array of elements
     public PriorityQueue(T[] element) {
-        heapSize = heapCapacity = element.length;
-        heap = new ArrayList<>(heapCapacity);
-
-        //Placing elements in the heap
-        for (int i = 0; i < heapSize; i++) {
-            mapAdd(element[i], i);
-            heap.add(element[i]);
-        }
-
-        for (int i = Math.max(0, (heapSize/2)-1); i >= 0; i--) {
-            navigateDown(i);
-        }
+        this(element.length);
+        addAll(Arrays.asList(element));
     }
 
     public PriorityQueue(Collection<T> elements) {
         this(elements.size());
-        for(T element: elements) add(element);
+        addAll(elements);
     }
 
     public boolean isEmpty() {
@@ -87,6 +81,34 @@ public class PriorityQueue<T extends  Comparable<T>> {
         heapSize++;
     }
 
+    //Add many elements, heapifying in O(n) when they are at least as many as the queued ones
+    public void addAll(Collection<T> elements) {
+        //a null rejected halfway would leave elements appended but neither heapified nor indexed
+        for (T element : elements)
+            if (element == null) throw new IllegalArgumentException();
+        if (elements.size() < heapSize) {
+            for (T element : elements) add(element);
+            return;
+        }
+        for (T element : elements) {
+            if (heapSize < heapCapacity)
+                heap.set(heapSize, element);
+            else {
+                heap.add(element);
+                heapCapacity++;
+            }
+            heapSize++;
+        }
+        heapify();
+    }
+
+    //Move every element of other into this queue, leaving other empty
+    public void merge(PriorityQueue<T> other) {
+        if (other == this) return;
+        addAll(other.heap.subList(0, other.heapSize));
+        other.clear();
+    }
+
     //remove an element in the heap
     public boolean remove(T element) {
         if (element == null) return false;
@@ -124,6 +146,27 @@ public class PriorityQueue<T extends  Comparable<T>> {
         return nodeA.compareTo(nodeB) <= 0;
     }
 
+    //Restore the heap property bottom up, then index every element once
+    private void heapify() {
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            //sift down without swaps, the map is rebuilt afterwards
+            T element = heap.get(i);
+            int hole = i;
+            while (true) {
+                int left = 2 * hole + 1;
+                if (left >= heapSize) break;
+                int right = left + 1;
+                int smallest = right < heapSize && heap.get(right).compareTo(heap.get(left)) < 0 ? right : left;
+                if (element.compareTo(heap.get(smallest)) <= 0) break;
+                heap.set(hole, heap.get(smallest));
+                hole = smallest;
+            }
+            heap.set(hole, element);
+        }
+        map.clear();
+        for (int i = 0; i < heapSize; i++) mapAdd(heap.get(i), i);
+    }
+
     //Navigate node upwards
     private void navigateUp(int i) {
         int parent = (i-1)/2;
@@ -0,0 +1,229 @@
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+public class TimingWheel<T> {
+    /**
+     * Implementation of a hierarchical timing wheel for timeouts.
+     *
+     * Time advances in ticks. Level 0 has one slot per tick; each slot of level l
+     * spans as many ticks as a full turn of level l-1. A timeout goes to the lowest
+     * level whose range covers its deadline, into a DoublyLinkedList slot, so that
+     * schedule and cancel are O(1). When a lower level completes a turn, the next
+     * slot of the level above is cascaded, i.e. its timeouts are placed again at
+     * lower levels, until they reach level 0 and fire.
+     *
+     * Deadlines beyond the range of the top level wait in a PriorityQueue and move
+     * into the wheels once they come within range.
+     *
+     * Time is driven by the caller: advance() reads the clock given at construction,
+     * tick() and advanceBy() move time by hand, which keeps tests deterministic.
+     * Expired tasks are handed to the expiry consumer from the thread that advances.
+     */
+    private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+
+    public final class Timeout implements Comparable<Timeout> {
+        private final T task;
+        private final long deadlineTick;
+        private int state = PENDING;
+        //wheel slot and list node holding this timeout, null while it waits in the overflow queue
+        private DoublyLinkedList<Timeout> slot;
+        private DoublyLinkedList.Node<Timeout> node;
+
+        private Timeout(T task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T task() {
+            return task;
+        }
+
+        //time at which the timeout fires, on the scale of the clock
+        public long deadline() {
+            return startTime + deadlineTick * tickNanos;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        //returns false when the timeout already fired or was cancelled
+        public boolean cancel() {
+            return TimingWheel.this.cancel(this);
+        }
+
+        @Override public int compareTo(Timeout other) {
+            return Long.compare(deadlineTick, other.deadlineTick);
+        }
+
+        @Override public String toString() {
+            return task + "@" + deadlineTick;
+        }
+    }
+
+    private static final int[] DEFAULT_WHEEL_SIZES = {256, 64, 64, 64};
+
+    private final long tickNanos;
+    private final long startTime;
+    private final LongSupplier clock;
+    private final Consumer<? super T> onExpiry;
+
+    private final int[] wheelSizes;
+    //ticks spanned by one slot of each level, spans[levels] is the range of the whole wheel
+    private final long[] spans;
+    private final DoublyLinkedList<Timeout>[][] wheels;
+    private final PriorityQueue<Timeout> overflow = new PriorityQueue<>();
+
+    private long currentTick = 0;
+    //time given to advanceBy that does not add up to a whole tick yet
+    private long pendingNanos = 0;
+    private int size = 0;
+
+    public TimingWheel(long tickDuration, TimeUnit unit, Consumer<? super T> onExpiry) {
+        this(tickDuration, unit, DEFAULT_WHEEL_SIZES, onExpiry, System::nanoTime);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickDuration, TimeUnit unit, int[] wheelSizes,
+                       Consumer<? super T> onExpiry, LongSupplier clock) {
+        if (tickDuration <= 0) throw new IllegalArgumentException("Illegal tickDuration " + tickDuration);
+        if (wheelSizes.length == 0) throw new IllegalArgumentException("No wheel sizes");
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.onExpiry = onExpiry;
+        this.clock = clock;
+        this.startTime = clock.getAsLong();
+        this.wheelSizes = wheelSizes.clone();
+        spans = new long[wheelSizes.length + 1];
+        spans[0] = 1;
+        wheels = new DoublyLinkedList[wheelSizes.length][];
+        for (int level = 0; level < wheelSizes.length; level++) {
+            if (wheelSizes[level] < 2) throw new IllegalArgumentException("Illegal wheel size " + wheelSizes[level]);
+            if (spans[level] > Long.MAX_VALUE / wheelSizes[level])
+                throw new IllegalArgumentException("Wheel range does not fit in a long");
+            spans[level + 1] = spans[level] * wheelSizes[level];
+            wheels[level] = new DoublyLinkedList[wheelSizes[level]];
+            for (int i = 0; i < wheelSizes[level]; i++) wheels[level][i] = new DoublyLinkedList<>();
+        }
+    }
+
+    //pending timeouts
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //time up to which the wheel has advanced, on the scale of the clock
+    public long currentTime() {
+        return startTime + currentTick * tickNanos;
+    }
+
+    //schedule a task to fire after the delay, rounded up to whole ticks and at least one tick
+    public Timeout schedule(T task, long delay, TimeUnit unit) {
+        if (task == null) throw new IllegalArgumentException("Null task");
+        if (delay < 0) throw new IllegalArgumentException("Negative delay");
+        long nanos = unit.toNanos(delay);
+        long ticks = Math.max(1, nanos / tickNanos + (nanos % tickNanos == 0 ? 0 : 1));
+        Timeout timeout = new Timeout(task, currentTick + ticks);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    public boolean cancel(Timeout timeout) {
+        if (timeout.state != PENDING) return false;
+        timeout.state = CANCELLED;
+        if (timeout.slot != null) unlink(timeout);
+        else overflow.remove(timeout);
+        size--;
+        return true;
+    }
+
+    //advance to the current time of the clock, returns the number of timeouts that fired
+    public int advance() {
+        long elapsed = clock.getAsLong() - startTime;
+        return advanceToTick(elapsed / tickNanos);
+    }
+
+    //advance by the duration, carrying what is left below a whole tick over to the next call
+    public int advanceBy(long duration, TimeUnit unit) {
+        if (duration < 0) throw new IllegalArgumentException("Negative duration");
+        long nanos = unit.toNanos(duration);
+        long ticks = nanos / tickNanos;
+        pendingNanos += nanos % tickNanos;
+        if (pendingNanos >= tickNanos) {
+            ticks++;
+            pendingNanos -= tickNanos;
+        }
+        return advanceToTick(currentTick + ticks);
+    }
+
+    //advance by a single tick
+    public int tick() {
+        return advanceToTick(currentTick + 1);
+    }
+
+    private int advanceToTick(long targetTick) {
+        int fired = 0;
+        while (currentTick < targetTick) {
+            //nothing to cascade or fire, jump straight to the target
+            if (size == 0) {
+                currentTick = targetTick;
+                break;
+            }
+            currentTick++;
+            for (int level = wheels.length - 1; level > 0; level--)
+                if (currentTick % spans[level] == 0)
+                    cascade(level, (int) ((currentTick / spans[level]) % wheelSizes[level]));
+            while (!overflow.isEmpty() && overflow.peek().deadlineTick - currentTick < spans[wheels.length])
+                place(overflow.poll());
+            DoublyLinkedList<Timeout> slot = wheels[0][(int) (currentTick % wheelSizes[0])];
+            while (!slot.isEmpty()) {
+                Timeout timeout = slot.removeFirst();
+                timeout.slot = null;
+                timeout.node = null;
+                timeout.state = EXPIRED;
+                size--;
+                fired++;
+                onExpiry.accept(timeout.task);
+            }
+        }
+        return fired;
+    }
+
+    //put a timeout into the lowest level whose range covers its deadline, or into the overflow queue
+    private void place(Timeout timeout) {
+        long ticks = timeout.deadlineTick - currentTick;
+        for (int level = 0; level < wheels.length; level++)
+            if (ticks < spans[level + 1]) {
+                //a cascaded timeout may be due on the current tick, whose level 0 slot fires next
+                long slotTick = Math.max(timeout.deadlineTick, currentTick);
+                DoublyLinkedList<Timeout> slot = wheels[level][(int) ((slotTick / spans[level]) % wheelSizes[level])];
+                timeout.slot = slot;
+                timeout.node = slot.addLastNode(timeout);
+                return;
+            }
+        timeout.slot = null;
+        timeout.node = null;
+        overflow.add(timeout);
+    }
+
+    //move every timeout of a slot to a lower level
+    private void cascade(int level, int index) {
+        DoublyLinkedList<Timeout> slot = wheels[level][index];
+        while (!slot.isEmpty()) place(slot.removeFirst());
+    }
+
+    private void unlink(Timeout timeout) {
+        timeout.slot.removeNode(timeout.node);
+        timeout.slot = null;
+        timeout.node = null;
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collector;
+
+public class TopK<T> {
+    /**
+     * Keeps the k largest elements of a stream, by natural order or by a comparator.
+     *
+     * The kept elements form a binary min heap in an Object[], so the root is the
+     * smallest of them: an element that is not larger than the root is rejected
+     * after that single comparison, and one that is larger replaces the root in
+     * place and sinks to its position. Bottom-k is top-k under the reversed order.
+     *
+     * Partial results merge, which is what toTopK and toBottomK use to collect
+     * parallel streams without sharing any state between substreams.
+     */
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final Object[] heap;
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    public TopK(int k) {
+        this(k, (Comparator<? super T>) Comparator.naturalOrder());
+    }
+
+    public TopK(int k, Comparator<? super T> comparator) {
+        if (k <= 0) throw new IllegalArgumentException("k <= 0 is not allowed");
+        this.k = k;
+        this.comparator = comparator;
+        heap = new Object[k];
+    }
+
+    public static <T> Collector<T, ?, List<T>> toTopK(int k, Comparator<? super T> comparator) {
+        return Collector.of(() -> new TopK<T>(k, comparator), TopK::offer, TopK::merge, TopK::toSortedList);
+    }
+
+    public static <T> Collector<T, ?, List<T>> toBottomK(int k, Comparator<? super T> comparator) {
+        return toTopK(k, Collections.reverseOrder(comparator));
+    }
+
+    public int k() {
+        return k;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+    }
+
+    //the smallest kept element, which a new element has to beat once k are kept
+    public T peekThreshold() {
+        if (isEmpty()) return null;
+        return elementAt(0);
+    }
+
+    //returns whether the element is now among the kept ones
+    public boolean offer(T element) {
+        if (element == null) throw new IllegalArgumentException();
+        if (size < k) {
+            navigateUp(size++, element);
+            return true;
+        }
+        if (comparator.compare(element, elementAt(0)) <= 0) return false;
+        navigateDown(element);
+        return true;
+    }
+
+    public void offerAll(Iterable<? extends T> elements) {
+        for (T element : elements) offer(element);
+    }
+
+    //fold the elements kept by another selector into this one, returns this
+    public TopK<T> merge(TopK<? extends T> other) {
+        for (int i = 0; i < other.size; i++) offer(other.elementAt(i));
+        return this;
+    }
+
+    //the kept elements, largest first
+    public List<T> toSortedList() {
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(elementAt(i));
+        list.sort(Collections.reverseOrder(comparator));
+        return list;
+    }
+
+    @Override public String toString() {
+        return toSortedList().toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int i) {
+        return (T) heap[i];
+    }
+
+    private void navigateUp(int i, T element) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            T parentElement = elementAt(parent);
+            if (comparator.compare(element, parentElement) >= 0) break;
+            heap[i] = parentElement;
+            i = parent;
+        }
+        heap[i] = element;
+    }
+
+    //Replace the root by element and move it down to its place
+    private void navigateDown(T element) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int right = left + 1;
+            int smallest = right < size && comparator.compare(elementAt(right), elementAt(left)) < 0 ? right : left;
+            if (comparator.compare(element, elementAt(smallest)) <= 0) break;
+            heap[i] = heap[smallest];
+            i = smallest;
+        }
+        heap[i] = element;
+    }
+}
@@ -43,13 +43,14 @@ public class UnionFind {
         if (root1 == root2) return;
 
         //merge smaller components into larger ones.
-        if (componentSize[root1] < componentSize(root2)) {
+        if (componentSize[root1] < componentSize[root2]) {
             componentSize[root2] += componentSize[root1];
             parentId[root1] = root2;
         }
-        else
+        else {
             componentSize[root1] += componentSize[root2];
             parentId[root2] = root1;
+        }
         componentsTotal--;
     }
 
@@ -57,7 +58,7 @@ public class UnionFind {
     public int find(int i) {
         //find the root of this component
         int root = i;
-        while (root != parentId[i])
+        while (root != parentId[root])
             root = parentId[root];
         /*
         compress the path leading back to the root (path compression).
@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExternalPriorityQueueTest {
+    private static final int MEMORY_LIMIT = 100;
+    private static final int MAX_RUNS = 4;
+
+    private static final ExternalPriorityQueue.Serializer<Integer> INTS = new ExternalPriorityQueue.Serializer<Integer>() {
+        @Override
+        public byte[] serialize(Integer element) {
+            return ByteBuffer.allocate(4).putInt(element).array();
+        }
+
+        @Override
+        public Integer deserialize(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pollsSpilledElementsInOrder() throws IOException {
+        Random random = new Random(17);
+        List<Integer> expected = new ArrayList<>();
+        try (ExternalPriorityQueue<Integer> queue =
+                     new ExternalPriorityQueue<>(directory, MEMORY_LIMIT, INTS, null, 64, MAX_RUNS)) {
+            for (int i = 0; i < 20 * MEMORY_LIMIT; i++) {
+                int element = random.nextInt(1000);
+                queue.add(element);
+                expected.add(element);
+                assertTrue(queue.runCount() <= MAX_RUNS);
+            }
+            assertTrue(queue.runCount() > 0);
+            assertEquals(expected.size(), queue.size());
+
+            Collections.sort(expected);
+            for (Integer element : expected) {
+                assertEquals(element, queue.peek());
+                assertEquals(element, queue.poll());
+            }
+            assertTrue(queue.isEmpty());
+            assertNull(queue.poll());
+            assertEquals(0, queue.runCount());
+            assertEquals(0, fileCount());
+        }
+    }
+
+    @Test
+    void interleavesAddAndPoll() {
+        Random random = new Random(42);
+        List<Integer> reference = new ArrayList<>();
+        try (ExternalPriorityQueue<Integer> queue =
+                     new ExternalPriorityQueue<>(directory, MEMORY_LIMIT, INTS, null, 64, MAX_RUNS)) {
+            for (int i = 0; i < 30 * MEMORY_LIMIT; i++) {
+                if (random.nextInt(3) == 0 && !reference.isEmpty()) {
+                    Integer min = Collections.min(reference);
+                    reference.remove(min);
+                    assertEquals(min, queue.poll());
+                } else {
+                    int element = random.nextInt();
+                    queue.add(element);
+                    reference.add(element);
+                }
+            }
+            assertEquals(reference.size(), queue.size());
+        }
+    }
+
+    @Test
+    void closeDeletesRunFiles() throws IOException {
+        ExternalPriorityQueue<Integer> queue =
+                new ExternalPriorityQueue<>(directory, MEMORY_LIMIT, INTS, null, 64, MAX_RUNS);
+        Random random = new Random(7);
+        for (int i = 0; i < 10 * MEMORY_LIMIT; i++) queue.add(random.nextInt());
+        for (int i = 0; i < MEMORY_LIMIT; i++) queue.poll();
+        assertTrue(fileCount() > 0);
+        queue.close();
+        assertEquals(0, fileCount());
+        assertTrue(queue.isEmpty());
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
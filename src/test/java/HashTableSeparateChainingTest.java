@@ -0,0 +1,224 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashTableSeparateChainingTest {
+
+    //a key whose hash is shared by a run of consecutive values
+    private static final class CollidingKey implements Comparable<CollidingKey> {
+        final int value, shift;
+
+        CollidingKey(int value, int shift) {
+            this.value = value;
+            this.shift = shift;
+        }
+
+        @Override public int hashCode() {
+            return value >>> shift;
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).value == value;
+        }
+
+        @Override public int compareTo(CollidingKey other) {
+            return Integer.compare(value, other.value);
+        }
+
+        @Override public String toString() {
+            return Integer.toString(value);
+        }
+    }
+
+    @Test
+    void incrementalRehashMatchesHashMap() {
+        Random random = new Random(1);
+        for (int rehashStep = 0; rehashStep <= 3; rehashStep++) {
+            HashTableSeparateChaining<Integer, Integer> table = new HashTableSeparateChaining<>(3, 0.75, rehashStep);
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int op = 0; op < 200000; op++) {
+                int key = random.nextInt(50000);
+                int choice = random.nextInt(10);
+                if (choice < 6) assertEquals(expected.put(key, op), table.put(key, op));
+                else if (choice < 8) assertEquals(expected.remove(key), table.remove(key));
+                else assertEquals(expected.get(key), table.get(key));
+                assertEquals(expected.size(), table.size());
+            }
+            assertEquals(expected.size(), table.keys().size());
+            assertEquals(expected.keySet(), new HashSet<>(table.keys()));
+            for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+                assertTrue(table.containsKey(entry.getKey()));
+        }
+    }
+
+    @Test
+    void collidingKeysMatchHashMap() {
+        Random random = new Random(2);
+        for (int round = 0; round < 9; round++) {
+            int rehashStep = round % 3, treeifyThreshold = 4 * (round / 3);
+            HashTableSeparateChaining<CollidingKey, Integer> table =
+                    new HashTableSeparateChaining<>(3, 0.75, rehashStep, treeifyThreshold);
+            Map<CollidingKey, Integer> expected = new HashMap<>();
+            for (int op = 0; op < 60000; op++) {
+                CollidingKey key = new CollidingKey(random.nextInt(40000), 10);
+                int choice = random.nextInt(10);
+                if (choice < 5) assertEquals(expected.put(key, op), table.put(key, op));
+                else if (choice < 8) assertEquals(expected.remove(key), table.remove(key));
+                else assertEquals(expected.get(key), table.get(key));
+                assertEquals(expected.size(), table.size());
+            }
+            for (Map.Entry<CollidingKey, Integer> entry : expected.entrySet())
+                assertEquals(entry.getValue(), table.get(entry.getKey()));
+            assertEquals(expected.keySet(), new HashSet<>(table.keys()));
+        }
+    }
+
+    @Test
+    void collidingKeysStayTreeifiedAcrossResizes() {
+        for (int rehashStep = 0; rehashStep <= 1; rehashStep++) {
+            HashTableSeparateChaining<CollidingKey, Integer> table =
+                    new HashTableSeparateChaining<>(3, 0.75, rehashStep, 8, true);
+            //128 hashes of 1024 keys each
+            for (int i = 0; i < 131072; i++) table.put(new CollidingKey(i, 10), i);
+            //lookups finish any migration still in progress
+            for (int i = 0; i < 131072; i++) assertEquals(Integer.valueOf(i), table.get(new CollidingKey(i, 10)));
+            HashTableStats stats = table.stats();
+            assertEquals(128, stats.treeifiedBuckets());
+            assertEquals(1024, stats.maxChainLength());
+        }
+    }
+
+    @Test
+    void bulkOperationsMatchHashMapDuringRehash() {
+        Random random = new Random(5);
+        for (int round = 0; round < 200; round++) {
+            HashTableSeparateChaining<Integer, Integer> table =
+                    new HashTableSeparateChaining<>(3, 0.75, 1 + round % 3, round % 2 == 0 ? 8 : 0);
+            Map<Integer, Integer> expected = new HashMap<>();
+            int n = 1000 + random.nextInt(20000);
+            for (int i = 0; i < n; i++) {
+                int key = random.nextInt(n * 2) - n / 3;
+                table.put(key, i);
+                expected.put(key, i);
+            }
+
+            Integer[] keys = new Integer[random.nextInt(3000) + 1];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = random.nextInt(20) == 0 ? null : random.nextInt(n * 2) - n / 3;
+            Integer[] out = new Integer[keys.length];
+            int found = 0;
+            for (Integer key : keys) if (key != null && expected.containsKey(key)) found++;
+            assertEquals(found, table.getAll(keys, out));
+            for (int i = 0; i < keys.length; i++)
+                assertEquals(keys[i] == null ? null : expected.get(keys[i]), out[i]);
+
+            int removed = 0;
+            for (Integer key : keys) if (key != null && expected.remove(key) != null) removed++;
+            assertEquals(removed, table.removeAll(keys));
+            assertEquals(expected.size(), table.size());
+
+            Integer[] putKeys = new Integer[500], putVals = new Integer[500];
+            for (int i = 0; i < putKeys.length; i++) {
+                putKeys[i] = random.nextInt(n * 3);
+                putVals[i] = i;
+                expected.put(putKeys[i], putVals[i]);
+            }
+            table.putAll(putKeys, putVals);
+            assertEquals(expected.size(), table.size());
+            for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+                assertEquals(entry.getValue(), table.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    void iteratorSeesEveryEntryOnceWhileBucketsMigrate() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            HashTableSeparateChaining<CollidingKey, Integer> table =
+                    new HashTableSeparateChaining<>(3, 0.75, 1 + round % 2, round % 3 == 0 ? 0 : 4);
+            Map<CollidingKey, Integer> expected = new HashMap<>();
+            int n = 100 + random.nextInt(5000);
+            for (int i = 0; i < n; i++) {
+                CollidingKey key = new CollidingKey(random.nextInt(n * 3), 6);
+                table.put(key, i);
+                expected.put(key, i);
+            }
+
+            Set<CollidingKey> seen = new HashSet<>();
+            Iterator<Map.Entry<CollidingKey, Integer>> iterator = table.entryIterator();
+            while (iterator.hasNext()) {
+                Map.Entry<CollidingKey, Integer> entry = iterator.next();
+                assertTrue(seen.add(entry.getKey()), "entry returned twice");
+                assertEquals(expected.get(entry.getKey()), entry.getValue());
+                //a lookup migrates buckets of an incremental rehash under the iterator
+                table.get(new CollidingKey(random.nextInt(n * 3), 6));
+                if (random.nextInt(4) == 0) {
+                    iterator.remove();
+                    expected.remove(entry.getKey());
+                }
+            }
+            assertTrue(seen.containsAll(expected.keySet()));
+            assertEquals(expected.size(), table.size());
+            for (Map.Entry<CollidingKey, Integer> entry : expected.entrySet())
+                assertEquals(entry.getValue(), table.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    void spliteratorSplitsSeeEveryEntryOnceWhileBucketsMigrate() {
+        Random random = new Random(13);
+        for (int round = 0; round < 300; round++) {
+            HashTableSeparateChaining<CollidingKey, Integer> table =
+                    new HashTableSeparateChaining<>(3, 0.75, 1 + round % 2, round % 3 == 0 ? 0 : 4);
+            Map<CollidingKey, Integer> expected = new HashMap<>();
+            int n = 100 + random.nextInt(5000);
+            for (int i = 0; i < n; i++) {
+                CollidingKey key = new CollidingKey(random.nextInt(n * 3), 6);
+                table.put(key, i);
+                expected.put(key, i);
+            }
+
+            assertEquals(expected.keySet(),
+                    table.stream().parallel().map(Map.Entry::getKey).collect(Collectors.toSet()));
+            assertEquals(expected.size(), table.stream().parallel().count());
+
+            Set<CollidingKey> seen = new HashSet<>();
+            Spliterator<Map.Entry<CollidingKey, Integer>> suffix = table.spliterator();
+            Spliterator<Map.Entry<CollidingKey, Integer>> prefix = suffix.trySplit();
+            if (prefix != null) {
+                prefix.tryAdvance(entry -> assertTrue(seen.add(entry.getKey())));
+                table.get(new CollidingKey(1, 6));
+                prefix.forEachRemaining(entry -> assertTrue(seen.add(entry.getKey())));
+            }
+            while (suffix.tryAdvance(entry -> assertTrue(seen.add(entry.getKey()))))
+                table.get(new CollidingKey(random.nextInt(n), 6));
+            assertEquals(expected.keySet(), seen);
+        }
+    }
+
+    @Test
+    void entryIteratorRemovesFromTreeifiedBuckets() {
+        HashTableSeparateChaining<CollidingKey, Integer> table = new HashTableSeparateChaining<>(3, 0.75, 0, 4);
+        for (int i = 0; i < 4096; i++) table.put(new CollidingKey(i, 8), i);
+        Iterator<Map.Entry<CollidingKey, Integer>> iterator = table.entryIterator();
+        while (iterator.hasNext()) {
+            Map.Entry<CollidingKey, Integer> entry = iterator.next();
+            assertNotNull(entry.getValue());
+            if (entry.getKey().value % 2 == 0) iterator.remove();
+        }
+        assertEquals(2048, table.size());
+        for (int i = 0; i < 4096; i++)
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), table.get(new CollidingKey(i, 8)));
+    }
+}
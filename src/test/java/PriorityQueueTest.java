@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityQueueTest {
+
+    @Test
+    void bulkLoadPollsInOrder() {
+        Random random = new Random(3);
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) elements.add(random.nextInt(100));
+        PriorityQueue<Integer> queue = new PriorityQueue<>(elements);
+        queue.addAll(elements);
+        assertTrue(queue.isMinHeap(0));
+
+        List<Integer> expected = new ArrayList<>(elements);
+        expected.addAll(elements);
+        Collections.sort(expected);
+        for (Integer element : expected) assertEquals(element, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void nullInTheMiddleOfABatchLeavesTheQueueUnchanged() {
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Arrays.asList(5, 3, 8));
+        assertThrows(IllegalArgumentException.class, () -> queue.addAll(Arrays.asList(4, 1, null, 7, 2, 9)));
+        assertEquals(3, queue.size());
+        assertTrue(queue.isMinHeap(0));
+        assertFalse(queue.contains(4));
+        assertFalse(queue.contains(1));
+
+        //the same on the one by one path, taken for a batch smaller than the queue
+        assertThrows(IllegalArgumentException.class, () -> queue.addAll(Arrays.asList(4, null)));
+        assertEquals(3, queue.size());
+        assertFalse(queue.contains(4));
+
+        queue.add(1);
+        assertTrue(queue.remove(8));
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertEquals(Integer.valueOf(3), queue.poll());
+        assertEquals(Integer.valueOf(5), queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void constructorRejectsANullElement() {
+        assertThrows(IllegalArgumentException.class, () -> new PriorityQueue<>(Arrays.asList(2, null, 1)));
+        assertThrows(IllegalArgumentException.class, () -> new PriorityQueue<>(new Integer[]{2, null, 1}));
+    }
+
+    @Test
+    void mergeEmptiesTheOtherQueue() {
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Arrays.asList(4, 2, 6));
+        PriorityQueue<Integer> other = new PriorityQueue<>(Arrays.asList(5, 1, 3, 7));
+        queue.merge(other);
+        assertTrue(other.isEmpty());
+        assertEquals(7, queue.size());
+        for (int i = 1; i <= 7; i++) assertEquals(Integer.valueOf(i), queue.poll());
+    }
+}